@@ -1,11 +1,34 @@
 package com.games.othello;
 
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.OthelloWeightedAlgorithm;
 import com.games.othello.viewController.OthelloGUI;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class Main {
 
-    public static void main(String[] args) {
-        OthelloGUI test = new OthelloGUI();
+    /**
+     * Starts a game. The clock can optionally be set from the command line as the total
+     * minutes for each side followed by the increment in seconds, for example "5 3". A weight
+     * file written by the weight tuner can be given after that for the computer to play with.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length >= 3){
+            long totalMillis = (long) (Double.parseDouble(args[0]) * 60 * 1000);
+            long incrementMillis = (long) (Double.parseDouble(args[1]) * 1000);
+            EvaluationWeights weights = EvaluationWeights.load(Paths.get(args[2]));
+            OthelloGUI test = new OthelloGUI(new OthelloWeightedAlgorithm(weights), totalMillis, incrementMillis);
+        }
+        else if(args.length >= 2){
+            long totalMillis = (long) (Double.parseDouble(args[0]) * 60 * 1000);
+            long incrementMillis = (long) (Double.parseDouble(args[1]) * 1000);
+            OthelloGUI test = new OthelloGUI(totalMillis, incrementMillis);
+        }
+        else{
+            OthelloGUI test = new OthelloGUI();
+        }
     }
 
 
@@ -0,0 +1,500 @@
+package com.games.othello.model;
+
+import com.games.othello.TileColor;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.games.othello.model.OthelloModel.DIMENSIONS;
+
+
+/**
+ * <p>Evaluates every legal move of a position in the background, searching one move deeper on
+ * each pass (iterative deepening), so that a score for every move is always available and gets
+ * more accurate over time. Positions at the end of the search are scored with a set of
+ * {@link EvaluationWeights}, and all scores are estimates of the final disc differential in
+ * hundredths of a disc. This is the scale {@link OthelloWeightedAlgorithm} scores moves on, but
+ * not {@link OthelloGreedyAlgorithm}, which counts captured pieces.</p>
+ *
+ * <p>The search runs on a fixed number of low priority threads, with the legal moves of the
+ * position split between them. Positions already searched are kept in a fixed size table, which
+ * never grows past {@link #TABLE_ENTRIES} entries. Starting a new analysis cancels the current
+ * one, but keeps the table, so analyzing the position after a move (which was searched as part
+ * of the previous analysis) starts far ahead.</p>
+ *
+ * <p>The search follows the rules of {@link OthelloGreedyAlgorithm}, where the game ends as soon
+ * as the side to move has no legal moves. The board is stored as bitboards, with bit x * 8 + y
+ * set if the spot (x, y) holds a piece.</p>
+ */
+public class AnalysisEngine {
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    //the table takes 24 bytes per entry, so this is 24 MB
+    public static final int TABLE_ENTRIES = 1 << 20;
+
+    //how a score stored in the table relates to the true score of the position
+    private static final int EXACT = 0, LOWER_BOUND = 1, UPPER_BOUND = 2;
+
+    private static final long NOT_FIRST_COLUMN = ~0x0101010101010101L;
+    private static final long NOT_LAST_COLUMN = ~0x8080808080808080L;
+    private static final int DIRECTIONS = 8;
+
+    //thrown inside the search when the analysis it belongs to was cancelled
+    private static final RuntimeException CANCELLED = new RuntimeException("analysis cancelled", null, false, false){};
+
+    private final double[] weights;
+    private final long[] squareClassMasks = new long[OthelloWeightedAlgorithm.NUM_SQUARE_CLASSES];
+    private final ExecutorService searchThreads;
+    private final ExecutorService driver;
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /*  The table of searched positions. Each slot holds the position's data (its score, depth,
+        bound, and the analysis that stored it), and the position's two bitboards each xor-ed with
+        the data. Threads read and write slots without locking, so a slot can be torn by two
+        threads writing at once, but then the bitboards won't match when they are read back, and
+        the slot is ignored.  */
+    private final long[] tablePlayer = new long[TABLE_ENTRIES];
+    private final long[] tableOpponent = new long[TABLE_ENTRIES];
+    private final long[] tableData = new long[TABLE_ENTRIES];
+    private volatile Map<Point, MoveScore> results = new ConcurrentHashMap<>();
+    private volatile int completedDepth = 0;
+    private volatile Point bestMove = null;
+    private volatile MoveScore bestScore = null;
+
+
+
+    /**
+     * Creates an analysis engine.
+     *
+     * @param weights the weights to score positions at the end of the search with.
+     * @param maxThreads the most threads (and so processor cores) the search may use at once.
+     */
+    public AnalysisEngine(EvaluationWeights weights, int maxThreads){
+        if(maxThreads <= 0){
+            throw new IllegalArgumentException("the analysis needs at least one thread");
+        }
+
+        this.weights = weights.toArray();
+        for(int x = 0; x < DIMENSIONS; x++){
+            for(int y = 0; y < DIMENSIONS; y++){
+                squareClassMasks[OthelloWeightedAlgorithm.squareClass(x, y)] |= 1L << (x * DIMENSIONS + y);
+            }
+        }
+
+        this.searchThreads = Executors.newFixedThreadPool(maxThreads, backgroundThreads("analysis-search"));
+        this.driver = Executors.newSingleThreadExecutor(backgroundThreads("analysis-driver"));
+    }
+
+
+    /**
+     * Starts analyzing a position, cancelling any analysis that is already running. The scores
+     * of the previous position are discarded.
+     *
+     * @param board all the non-green positions on the board, as returned by {@link OthelloModel#getBoard()}.
+     * @param whiteToMove true if it is white's turn, or false if it is black's.
+     */
+    public void analyze(Map<Point, TileColor> board, boolean whiteToMove){
+        final int current = generation.incrementAndGet();
+
+        long black = 0, white = 0;
+        for(Map.Entry<Point, TileColor> entry : board.entrySet()){
+            long bit = 1L << (entry.getKey().x * DIMENSIONS + entry.getKey().y);
+            if(entry.getValue() == TileColor.BLACK){
+                black |= bit;
+            }
+            else if(entry.getValue() == TileColor.WHITE){
+                white |= bit;
+            }
+        }
+
+        final long player = (whiteToMove ? white : black);
+        final long opponent = (whiteToMove ? black : white);
+        final Map<Point, MoveScore> scores = new ConcurrentHashMap<>();
+        synchronized(this){
+            results = scores;
+            completedDepth = 0;
+            bestMove = null;
+            bestScore = null;
+        }
+
+        driver.execute(() -> deepen(current, player, opponent, scores));
+    }
+
+
+    /**
+     * Cancels the running analysis, if there is one. The scores found so far are kept.
+     */
+    public void stop(){
+        generation.incrementAndGet();
+    }
+
+
+    /**
+     * Cancels the running analysis and stops all the threads. The engine can't be used afterwards.
+     */
+    public void shutdown(){
+        stop();
+        driver.shutdownNow();
+        searchThreads.shutdownNow();
+    }
+
+
+    /**
+     * Returns the latest score of every legal move of the position being analyzed. Moves that
+     * haven't finished their first pass yet are missing.
+     *
+     * @return a HashMap from each move to its latest score.
+     */
+    public HashMap<Point, MoveScore> getResults(){
+        return new HashMap<>(results);
+    }
+
+
+    /**
+     * Returns the deepest search that has finished for every legal move.
+     *
+     * @return the depth in moves, or 0 if the first pass isn't finished yet.
+     */
+    public int getCompletedDepth(){
+        return completedDepth;
+    }
+
+
+    /**
+     * Returns the best move found by the deepest search that has finished for every legal move.
+     * Unlike picking the best of {@link #getResults()}, this never compares moves that were
+     * searched to different depths.
+     *
+     * @return the best move, or null if the first pass isn't finished yet.
+     */
+    public Point getBestMove(){
+        Point best = bestMove;
+        return (best == null ? null : new Point(best));
+    }
+
+
+    /**
+     * Returns the score of the move returned by {@link #getBestMove()}, from the same search.
+     *
+     * @return the score of the best move and the depth it was searched to, or null if the first
+     *          pass isn't finished yet.
+     */
+    public MoveScore getBestScore(){
+        return bestScore;
+    }
+
+
+    /**
+     * Searches every legal move one move deeper on each pass, until the search reaches the end of
+     * the game or the analysis is cancelled. Each move's score is published as soon as it is found.
+     */
+    private void deepen(int current, long player, long opponent, Map<Point, MoveScore> scores){
+        long moves = legalMoves(player, opponent);
+        if(moves == 0){     //the game is over, so there is nothing to analyze
+            return;
+        }
+        int maxDepth = Long.bitCount(~(player | opponent));
+
+        for(int depth = 1; depth <= maxDepth && generation.get() == current; depth++){
+            final int childDepth = depth - 1;
+            final int reportedDepth = depth;
+            List<Callable<Void>> tasks = new ArrayList<>();
+
+            for(long remaining = moves; remaining != 0; remaining &= remaining - 1){
+                final int square = Long.numberOfTrailingZeros(remaining);
+                tasks.add(() -> {
+                    long move = 1L << square;
+                    long flipped = flips(player, opponent, move);
+                    int score = -search(current, opponent ^ flipped, player | move | flipped, childDepth, -INFINITY, INFINITY);
+
+                    if(generation.get() == current){
+                        scores.put(new Point(square / DIMENSIONS, square % DIMENSIONS), new MoveScore(score, reportedDepth));
+                    }
+                    return null;
+                });
+            }
+
+            try{
+                for(Future<Void> task : searchThreads.invokeAll(tasks)){
+                    task.get();
+                }
+            }
+            catch(InterruptedException e){
+                return;
+            }
+            catch(ExecutionException e){
+                if(e.getCause() == CANCELLED){
+                    return;
+                }
+                throw new IllegalStateException("analysis failed", e.getCause());
+            }
+
+            synchronized(this){
+                if(generation.get() == current){
+                    completedDepth = depth;
+                    bestMove = bestOf(scores);
+                    bestScore = scores.get(bestMove);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Finds the move with the highest score.
+     */
+    private static Point bestOf(Map<Point, MoveScore> scores){
+        Point best = null;
+        int bestScore = Integer.MIN_VALUE;
+        for(Map.Entry<Point, MoveScore> entry : scores.entrySet()){
+            if(entry.getValue().getScore() > bestScore){
+                bestScore = entry.getValue().getScore();
+                best = entry.getKey();
+            }
+        }
+
+        return best;
+    }
+
+
+    /**
+     * Alpha-beta search of a position, scored from the point of view of the side to move.
+     *
+     * @param current the analysis this search belongs to.
+     * @param player the pieces of the side to move.
+     * @param opponent the pieces of the other side.
+     * @param depth the number of moves left to search.
+     * @param alpha the score the side to move is already guaranteed elsewhere.
+     * @param beta the score the other side is already guaranteed elsewhere.
+     * @return the score of the position.
+     */
+    private int search(int current, long player, long opponent, int depth, int alpha, int beta){
+        if(generation.get() != current){
+            throw CANCELLED;
+        }
+
+        long moves = legalMoves(player, opponent);
+        if(moves == 0){     //the game is over
+            return (Long.bitCount(player) - Long.bitCount(opponent)) * 100;
+        }
+        if(depth == 0){
+            return evaluate(player, opponent, moves);
+        }
+
+        final int slot = tableSlot(player, opponent);
+        long stored = tableData[slot];
+        boolean found = ((tablePlayer[slot] ^ stored) == player && (tableOpponent[slot] ^ stored) == opponent);
+        if(found && storedDepth(stored) >= depth){
+            int score = storedScore(stored);
+            int bound = storedBound(stored);
+            if(bound == EXACT){
+                return score;
+            }
+            else if(bound == LOWER_BOUND){
+                alpha = Math.max(alpha, score);
+            }
+            else{
+                beta = Math.min(beta, score);
+            }
+            if(alpha >= beta){
+                return score;
+            }
+        }
+
+        final int originalAlpha = alpha;
+        int best = -INFINITY;
+        for(long remaining = moves; remaining != 0 && alpha < beta; remaining &= remaining - 1){
+            long move = remaining & -remaining;
+            long flipped = flips(player, opponent, move);
+            int score = -search(current, opponent ^ flipped, player | move | flipped, depth - 1, -beta, -alpha);
+
+            best = Math.max(best, score);
+            alpha = Math.max(alpha, score);
+        }
+
+        int bound = (best <= originalAlpha ? UPPER_BOUND : (best >= beta ? LOWER_BOUND : EXACT));
+        store(slot, player, opponent, ((long) best << 32) | ((current & 0xFFL) << 16) | ((long) depth << 8) | bound);
+        return best;
+    }
+
+
+    /**
+     * Stores a search result in the table. The slot's current entry is only replaced if it was
+     * stored by an earlier analysis, or by a search that was no deeper than this one, so that
+     * expensive results survive while they are still useful.
+     */
+    private void store(int slot, long player, long opponent, long data){
+        long stored = tableData[slot];
+        if(stored != 0 && storedAge(stored) == storedAge(data) && storedDepth(stored) > storedDepth(data)){
+            return;
+        }
+
+        tableData[slot] = data;
+        tablePlayer[slot] = player ^ data;
+        tableOpponent[slot] = opponent ^ data;
+    }
+
+
+    private static int tableSlot(long player, long opponent){
+        long hash = (player * 0x9E3779B97F4A7C15L) ^ (opponent * 0xC2B2AE3D27D4EB4FL);
+        return (int) (hash ^ (hash >>> 32)) & (TABLE_ENTRIES - 1);
+    }
+
+
+    /**
+     * Scores a position with the evaluation weights, from the point of view of the side to move,
+     * in hundredths of a disc. This matches {@link OthelloWeightedAlgorithm#extractFeatures}.
+     */
+    private int evaluate(long player, long opponent, long playerMoves){
+        double total = 0;
+        for(int i = 0; i < squareClassMasks.length; i++){
+            int difference = Long.bitCount(player & squareClassMasks[i]) - Long.bitCount(opponent & squareClassMasks[i]);
+            total += weights[i] * difference;
+        }
+
+        int mobility = Long.bitCount(playerMoves) - Long.bitCount(legalMoves(opponent, player));
+        total += weights[OthelloWeightedAlgorithm.MOBILITY_FEATURE] * mobility;
+
+        return (int) Math.round(total * 100);
+    }
+
+
+    private static int storedScore(long entry){
+        return (int) (entry >> 32);
+    }
+
+
+    private static int storedDepth(long entry){
+        return (int) ((entry >>> 8) & 0xFF);
+    }
+
+
+    private static int storedAge(long entry){
+        return (int) ((entry >>> 16) & 0xFF);
+    }
+
+
+    private static int storedBound(long entry){
+        return (int) (entry & 0xFF);
+    }
+
+
+    /**
+     * Finds all the empty spots where the player can go.
+     *
+     * @return a bitboard of the player's legal moves.
+     */
+    private static long legalMoves(long player, long opponent){
+        long empty = ~(player | opponent);
+        long moves = 0;
+
+        for(int direction = 0; direction < DIRECTIONS; direction++){
+            //follow each line of opponent pieces that starts next to one of the player's pieces
+            long line = shift(player, direction) & opponent;
+            for(int i = 0; i < DIMENSIONS - 3; i++){
+                line |= shift(line, direction) & opponent;
+            }
+            moves |= shift(line, direction) & empty;
+        }
+
+        return moves;
+    }
+
+
+    /**
+     * Finds the opponent pieces captured when the player goes in the specified spot.
+     *
+     * @param move a bitboard with only the spot of the move set.
+     * @return a bitboard of the captured pieces, not including the move itself.
+     */
+    private static long flips(long player, long opponent, long move){
+        long flipped = 0;
+
+        for(int direction = 0; direction < DIRECTIONS; direction++){
+            long line = 0;
+            long next = shift(move, direction);
+            while((next & opponent) != 0){
+                line |= next;
+                next = shift(next, direction);
+            }
+            if((next & player) != 0){   //the line is closed off by one of the player's pieces
+                flipped |= line;
+            }
+        }
+
+        return flipped;
+    }
+
+
+    /**
+     * Moves every piece on a bitboard one spot in the specified direction. Pieces that would
+     * leave the board are dropped, in the same order of directions as
+     * {@link OthelloGreedyAlgorithm OthelloGreedyAlgorithm.shifts}.
+     */
+    private static long shift(long bitboard, int direction){
+        switch(direction){
+            case 0: return bitboard << 8;                               //move south
+            case 1: return (bitboard << 9) & NOT_FIRST_COLUMN;          //move south-east
+            case 2: return (bitboard << 1) & NOT_FIRST_COLUMN;          //move east
+            case 3: return (bitboard >>> 7) & NOT_FIRST_COLUMN;         //move north-east
+            case 4: return bitboard >>> 8;                              //move north
+            case 5: return (bitboard >>> 9) & NOT_LAST_COLUMN;          //move north-west
+            case 6: return (bitboard >>> 1) & NOT_LAST_COLUMN;          //move west
+            default: return (bitboard << 7) & NOT_LAST_COLUMN;          //move south-west
+        }
+    }
+
+
+    private static ThreadFactory backgroundThreads(String name){
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);    //keep the user interface responsive
+            return thread;
+        };
+    }
+
+
+
+    /**
+     * The score of a move, and how deep the search behind it was.
+     */
+    public static final class MoveScore {
+        private final int score;
+        private final int depth;
+
+
+        MoveScore(int score, int depth){
+            this.score = score;
+            this.depth = depth;
+        }
+
+
+        /**
+         * @return the score of the move for the side to move, in hundredths of a disc.
+         */
+        public int getScore(){
+            return score;
+        }
+
+
+        /**
+         * @return the number of moves searched, including the move itself.
+         */
+        public int getDepth(){
+            return depth;
+        }
+    }
+}
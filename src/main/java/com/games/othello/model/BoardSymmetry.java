@@ -0,0 +1,136 @@
+package com.games.othello.model;
+
+import static com.games.othello.model.OthelloModel.DIMENSIONS;
+
+
+/**
+ * <p>The 8 symmetries of the game board: the identity, the three rotations, and the four
+ * reflections. Othello positions that map onto each other by one of these symmetries are
+ * equivalent, and have the same best moves (mapped through the same symmetry).</p>
+ *
+ * <p>Squares are numbered from 0 to 63 as x * 8 + y, and a board of pieces is stored as a bitboard,
+ * a long where bit n is set if square n holds a piece.</p>
+ */
+public final class BoardSymmetry {
+
+    public static final int COUNT = 8;
+    public static final int IDENTITY = 0;
+
+    private static final int SQUARES = DIMENSIONS * DIMENSIONS;
+
+    //MAP[s][square] is where the symmetry s moves the square to
+    private static final int[][] MAP = new int[COUNT][SQUARES];
+    private static final int[] INVERSE = new int[COUNT];
+
+    static {
+        final int n = DIMENSIONS - 1;
+        for(int x = 0; x < DIMENSIONS; x++){
+            for(int y = 0; y < DIMENSIONS; y++){
+                int square = x * DIMENSIONS + y;
+                MAP[0][square] = square;                          //identity
+                MAP[1][square] = y * DIMENSIONS + (n - x);        //rotate 90 degrees
+                MAP[2][square] = (n - x) * DIMENSIONS + (n - y);  //rotate 180 degrees
+                MAP[3][square] = (n - y) * DIMENSIONS + x;        //rotate 270 degrees
+                MAP[4][square] = x * DIMENSIONS + (n - y);        //mirror east to west
+                MAP[5][square] = (n - x) * DIMENSIONS + y;        //mirror north to south
+                MAP[6][square] = y * DIMENSIONS + x;              //mirror on the main diagonal
+                MAP[7][square] = (n - y) * DIMENSIONS + (n - x);  //mirror on the other diagonal
+            }
+        }
+
+        //the inverse of a symmetry is the one that brings every square back to where it started
+        for(int s = 0; s < COUNT; s++){
+            for(int t = 0; t < COUNT; t++){
+                boolean undoes = true;
+                for(int square = 0; square < SQUARES && undoes; square++){
+                    undoes = (MAP[t][MAP[s][square]] == square);
+                }
+                if(undoes){
+                    INVERSE[s] = t;
+                }
+            }
+        }
+    }
+
+
+
+    private BoardSymmetry(){
+    }
+
+
+    /**
+     * Moves a single square through a symmetry.
+     *
+     * @param symmetry the index of the symmetry, from 0 to 7.
+     * @param square the square to move, from 0 to 63.
+     * @return the square it ends up on.
+     */
+    public static int mapSquare(int symmetry, int square){
+        return MAP[symmetry][square];
+    }
+
+
+    /**
+     * Moves every piece on a bitboard through a symmetry.
+     *
+     * @param symmetry the index of the symmetry, from 0 to 7.
+     * @param bitboard the pieces to move.
+     * @return the bitboard with every piece moved.
+     */
+    public static long mapBitboard(int symmetry, long bitboard){
+        if(symmetry == IDENTITY){
+            return bitboard;
+        }
+
+        long output = 0;
+        while(bitboard != 0){
+            output |= 1L << MAP[symmetry][Long.numberOfTrailingZeros(bitboard)];
+            bitboard &= bitboard - 1;   //clear the lowest piece
+        }
+
+        return output;
+    }
+
+
+    /**
+     * Returns the symmetry that undoes the specified symmetry.
+     *
+     * @param symmetry the index of the symmetry, from 0 to 7.
+     * @return the index of its inverse.
+     */
+    public static int inverse(int symmetry){
+        return INVERSE[symmetry];
+    }
+
+
+    /**
+     * Finds the symmetry that maps a position to its canonical form, which is the same for every
+     * position that is equivalent to it. The canonical form is the one with the smallest black
+     * bitboard, breaking ties with the smallest white bitboard.
+     *
+     * @param black the black pieces.
+     * @param white the white pieces.
+     * @return the index of the symmetry that produces the canonical form.
+     */
+    public static int canonicalSymmetry(long black, long white){
+        int best = IDENTITY;
+        long bestBlack = black, bestWhite = white;
+
+        for(int s = 1; s < COUNT; s++){
+            long b = mapBitboard(s, black);
+            int compare = Long.compareUnsigned(b, bestBlack);
+            if(compare > 0){
+                continue;
+            }
+
+            long w = mapBitboard(s, white);
+            if(compare < 0 || Long.compareUnsigned(w, bestWhite) < 0){
+                best = s;
+                bestBlack = b;
+                bestWhite = w;
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,205 @@
+package com.games.othello.model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+
+/**
+ * <p>The weights of the linear evaluation used by {@link OthelloWeightedAlgorithm}. Each weight
+ * belongs to one of the features described in {@link OthelloWeightedAlgorithm#extractFeatures
+ * extractFeatures}, and a position is scored as the sum of each feature times its weight. The
+ * score is an estimate of the final disc differential.</p>
+ *
+ * <p>Weights are stored in a plain text file with one feature per line, holding the feature
+ * name and its weight separated by whitespace. Blank lines and lines starting with # are ignored.
+ * Objects of this class are immutable.</p>
+ */
+public final class EvaluationWeights {
+
+    private final double[] weights;
+
+
+
+    /**
+     * Creates a set of weights.
+     *
+     * @param weights one weight for each feature, in the order of the feature indexes.
+     */
+    public EvaluationWeights(double[] weights){
+        if(weights.length != OthelloWeightedAlgorithm.NUM_FEATURES){
+            throw new IllegalArgumentException("expected " + OthelloWeightedAlgorithm.NUM_FEATURES
+                    + " weights but got " + weights.length);
+        }
+
+        this.weights = weights.clone();
+    }
+
+
+    /**
+     * Returns the weights to start training from. Every square counts as one disc and mobility is
+     * ignored, so the computer plays the same moves as the plain greedy algorithm.
+     *
+     * @return the starting weights.
+     */
+    public static EvaluationWeights initial(){
+        double[] weights = new double[OthelloWeightedAlgorithm.NUM_FEATURES];
+        Arrays.fill(weights, 0, OthelloWeightedAlgorithm.NUM_SQUARE_CLASSES, 1.0);
+        return new EvaluationWeights(weights);
+    }
+
+
+    /**
+     * Reads a set of weights from a weight file.
+     *
+     * @param file the file to read.
+     * @return the weights stored in the file.
+     * @throws IOException if the file can't be read, or it is missing a feature or has
+     *          a feature this version doesn't know about.
+     */
+    public static EvaluationWeights load(Path file) throws IOException {
+        double[] weights = new double[OthelloWeightedAlgorithm.NUM_FEATURES];
+        boolean[] found = new boolean[weights.length];
+
+        try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+            String line;
+            while((line = in.readLine()) != null){
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")){
+                    continue;
+                }
+
+                String[] parts = line.split("\\s+");
+                int index = featureIndex(parts[0]);
+                if(parts.length != 2 || index < 0){
+                    throw new IOException("malformed line in weight file " + file + ": " + line);
+                }
+
+                try{
+                    weights[index] = Double.parseDouble(parts[1]);
+                }
+                catch(NumberFormatException e){
+                    throw new IOException("malformed weight in weight file " + file + ": " + line, e);
+                }
+                found[index] = true;
+            }
+        }
+
+        for(int i = 0; i < found.length; i++){
+            if(!found[i]){
+                throw new IOException("weight file " + file + " has no weight for " + featureName(i));
+            }
+        }
+
+        return new EvaluationWeights(weights);
+    }
+
+
+    /**
+     * Writes these weights to a weight file, replacing it if it already exists.
+     *
+     * @param file the file to write.
+     * @throws IOException if the file can't be written.
+     */
+    public void save(Path file) throws IOException {
+        try(BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+            out.write("# Othello evaluation weights");
+            out.newLine();
+            for(int i = 0; i < weights.length; i++){
+                out.write(featureName(i) + " " + weights[i]);
+                out.newLine();
+            }
+        }
+    }
+
+
+    /**
+     * Scores a position from its features.
+     *
+     * @param features an array holding the features of the position.
+     * @param offset the index in the array where the position's features start.
+     * @return the estimated final disc differential.
+     */
+    public double evaluate(byte[] features, int offset){
+        double total = 0;
+        for(int i = 0; i < weights.length; i++){
+            total += weights[i] * features[offset + i];
+        }
+
+        return total;
+    }
+
+
+    /**
+     * Returns a copy of all the weights, in the order of the feature indexes.
+     *
+     * @return the weights.
+     */
+    public double[] toArray(){
+        return weights.clone();
+    }
+
+
+    /**
+     * Returns a number that identifies these weights. Equal weights always have the same
+     * fingerprint, and different weights almost certainly have different fingerprints.
+     *
+     * @return the fingerprint, which is never 0.
+     */
+    public long fingerprint(){
+        long hash = 0x243F6A8885A308D3L;
+        for(double weight : weights){
+            hash = (hash ^ Double.doubleToLongBits(weight)) * 0x100000001B3L;
+            hash ^= hash >>> 29;
+        }
+
+        return (hash == 0 ? 1 : hash);
+    }
+
+
+    /**
+     * Returns the name used for the specified feature in weight files.
+     *
+     * @param index the index of the feature.
+     * @return the name of the feature.
+     */
+    public static String featureName(int index){
+        if(index == OthelloWeightedAlgorithm.MOBILITY_FEATURE){
+            return "mobility";
+        }
+
+        int[] square = OthelloWeightedAlgorithm.representativeSquare(index);
+        return "square-" + square[0] + "-" + square[1];
+    }
+
+
+    /**
+     * Finds the index of the feature with the specified name.
+     *
+     * @return the index of the feature, or -1 if there is no such feature.
+     */
+    private static int featureIndex(String name){
+        for(int i = 0; i < OthelloWeightedAlgorithm.NUM_FEATURES; i++){
+            if(featureName(i).equals(name)){
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < weights.length; i++){
+            builder.append(i == 0 ? "" : ", ").append(featureName(i)).append('=').append(weights[i]);
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package com.games.othello.model;
+
+import com.games.othello.TileColor;
+
+
+/**
+ * <p>A chess style game clock for the two sides of an Othello game. Each side starts with the
+ * same amount of time, and receives a fixed increment every time it completes a move (a Fischer
+ * increment). Only one side's clock runs at a time.</p>
+ *
+ * <p>This class is not thread safe, and is meant to be used only from the thread that runs the
+ * game (the Swing event dispatch thread).</p>
+ */
+public class GameClock {
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+
+    private final long incrementNanos;
+    private long whiteRemaining, blackRemaining;    //in nanoseconds, not counting the running period
+    private TileColor running = null;               //null when neither clock is running
+    private long runningSince;
+
+
+
+    /**
+     * Creates a clock that gives each side the same total time and increment.
+     *
+     * @param totalMillis the time each side starts with, in milliseconds.
+     * @param incrementMillis the time added to a side's clock after each of its moves, in milliseconds.
+     */
+    public GameClock(long totalMillis, long incrementMillis){
+        if(totalMillis <= 0 || incrementMillis < 0){
+            throw new IllegalArgumentException("clock needs a positive total time and a non-negative increment");
+        }
+
+        this.incrementNanos = incrementMillis * NANOS_PER_MILLI;
+        this.whiteRemaining = totalMillis * NANOS_PER_MILLI;
+        this.blackRemaining = totalMillis * NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * Starts the clock of the specified side. If the other side's clock is running it is
+     * stopped first, without receiving an increment.
+     *
+     * @param side the side whose clock should start running.
+     */
+    public void start(TileColor side){
+        if(side == TileColor.GREEN)
+            throw new IllegalArgumentException("green does not have a clock");
+
+        stop();
+        running = side;
+        runningSince = System.nanoTime();
+    }
+
+
+    /**
+     * Ends the turn of the side whose clock is running. That side is charged for the time it used
+     * and receives its increment (unless it already ran out of time), and the other side's clock
+     * starts running.
+     */
+    public void press(){
+        if(running == null){
+            throw new IllegalStateException("the clock was pressed while it was not running");
+        }
+
+        TileColor finished = running;
+        stop();
+        if(!hasFlagged(finished)){
+            addTime(finished, incrementNanos);
+        }
+
+        start(finished == TileColor.WHITE ? TileColor.BLACK : TileColor.WHITE);
+    }
+
+
+    /**
+     * Stops whichever clock is running, charging that side for the time it used. Does nothing if
+     * no clock is running.
+     */
+    public void stop(){
+        if(running == null){
+            return;
+        }
+
+        addTime(running, -(System.nanoTime() - runningSince));
+        running = null;
+    }
+
+
+    /**
+     * Returns the side whose clock is currently running.
+     *
+     * @return the side whose clock is running, or null if the clock is stopped.
+     */
+    public TileColor getRunningSide(){
+        return running;
+    }
+
+
+    /**
+     * Returns the time the specified side has left, including the time used so far on the
+     * current turn if its clock is running.
+     *
+     * @param side the side whose time is being checked.
+     * @return the remaining time in milliseconds. This can be negative if the side ran out of time.
+     */
+    public long getRemainingMillis(TileColor side){
+        long remaining = (side == TileColor.WHITE ? whiteRemaining : blackRemaining);
+        if(side == running){
+            remaining -= System.nanoTime() - runningSince;
+        }
+
+        return remaining / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * Returns the increment each side receives after completing a move.
+     *
+     * @return the increment in milliseconds.
+     */
+    public long getIncrementMillis(){
+        return incrementNanos / NANOS_PER_MILLI;
+    }
+
+
+    /**
+     * Checks if the specified side has run out of time.
+     *
+     * @param side the side being checked.
+     * @return true if that side has no time left, or false otherwise.
+     */
+    public boolean hasFlagged(TileColor side){
+        return getRemainingMillis(side) <= 0;
+    }
+
+
+    private void addTime(TileColor side, long nanos){
+        if(side == TileColor.WHITE){
+            whiteRemaining += nanos;
+        }
+        else{
+            blackRemaining += nanos;
+        }
+    }
+}
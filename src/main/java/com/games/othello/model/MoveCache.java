@@ -0,0 +1,305 @@
+package com.games.othello.model;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * <p>A thread safe cache of the moves the computer has already chosen, shared by every game
+ * running in the process. Positions are stored in their canonical form under the 8
+ * {@link BoardSymmetry board symmetries}, so a position that is a rotation or reflection of one
+ * that was already solved is a cache hit, and the stored move is mapped back through the
+ * symmetry. When several moves tie for best, a hit may return a different one of the tied moves
+ * than a fresh calculation would.</p>
+ *
+ * <p>The cache counts its hits, misses, and evictions, so that callers can report how well it is
+ * doing. {@link #toString()} sums them all up in one line.</p>
+ *
+ * <p>The cache holds a fixed number of positions. It is split into segments that are locked
+ * separately to keep contention between games low, and each segment evicts its least recently
+ * used position when it is full.</p>
+ */
+public final class MoveCache {
+
+    private static final int SEGMENTS = 16;
+    private static final MoveCache SHARED = new MoveCache(Integer.getInteger("othello.moveCache.capacity", 1 << 18));
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+
+
+    /**
+     * Creates a cache.
+     *
+     * @param capacity the most positions the cache holds at once.
+     */
+    public MoveCache(int capacity){
+        if(capacity < SEGMENTS){
+            throw new IllegalArgumentException("move cache capacity must be at least " + SEGMENTS);
+        }
+
+        for(int i = 0; i < SEGMENTS; i++){
+            segments[i] = new Segment(capacity / SEGMENTS);
+        }
+    }
+
+
+    /**
+     * Returns the cache shared by every game in the process. Its capacity can be set with the
+     * othello.moveCache.capacity system property.
+     *
+     * @return the shared cache.
+     */
+    public static MoveCache shared(){
+        return SHARED;
+    }
+
+
+    /**
+     * Looks up the move previously chosen in the specified position, or any position equivalent
+     * to it.
+     *
+     * @param black the bitboard of black pieces.
+     * @param white the bitboard of white pieces.
+     * @param whiteToMove true if it is white's turn, or false if it is black's.
+     * @param evaluatorId identifies the evaluation that chose the move, so different
+     *                    evaluations never share results.
+     * @return the cached move, mapped onto the specified position, or null if it isn't cached.
+     */
+    public CachedMove lookup(long black, long white, boolean whiteToMove, long evaluatorId){
+        int symmetry = BoardSymmetry.canonicalSymmetry(black, white);
+        Key key = new Key(BoardSymmetry.mapBitboard(symmetry, black),
+                BoardSymmetry.mapBitboard(symmetry, white), whiteToMove, evaluatorId);
+
+        CachedMove stored = segmentFor(key).get(key);
+        if(stored == null){
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return new CachedMove(BoardSymmetry.mapSquare(BoardSymmetry.inverse(symmetry), stored.square), stored.score);
+    }
+
+
+    /**
+     * Stores the move chosen in the specified position.
+     *
+     * @param black the bitboard of black pieces.
+     * @param white the bitboard of white pieces.
+     * @param whiteToMove true if it is white's turn, or false if it is black's.
+     * @param evaluatorId identifies the evaluation that chose the move.
+     * @param move the chosen move, in the orientation of the specified position.
+     */
+    public void store(long black, long white, boolean whiteToMove, long evaluatorId, CachedMove move){
+        int symmetry = BoardSymmetry.canonicalSymmetry(black, white);
+        Key key = new Key(BoardSymmetry.mapBitboard(symmetry, black),
+                BoardSymmetry.mapBitboard(symmetry, white), whiteToMove, evaluatorId);
+
+        segmentFor(key).put(key, new CachedMove(BoardSymmetry.mapSquare(symmetry, move.square), move.score));
+    }
+
+
+    /**
+     * Returns the number of lookups that found a move.
+     *
+     * @return the number of cache hits.
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+
+    /**
+     * Returns the number of lookups that didn't find a move.
+     *
+     * @return the number of cache misses.
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+
+    /**
+     * Returns the number of positions that were dropped to make room for new ones.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+
+    /**
+     * Returns the fraction of lookups that found a move.
+     *
+     * @return the hit rate, from 0 to 1. It is 0 if there were no lookups yet.
+     */
+    public double getHitRate(){
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return (total == 0 ? 0 : (double) hitCount / total);
+    }
+
+
+    /**
+     * Returns the number of positions currently in the cache.
+     *
+     * @return the number of cached positions.
+     */
+    public int size(){
+        int total = 0;
+        for(Segment segment : segments){
+            total += segment.size();
+        }
+
+        return total;
+    }
+
+
+    /**
+     * Removes every position from the cache and resets the statistics.
+     */
+    public void clear(){
+        for(Segment segment : segments){
+            segment.clear();
+        }
+
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+
+    @Override
+    public String toString(){
+        return String.format("MoveCache[size=%d, hits=%d, misses=%d, hitRate=%.3f, evictions=%d]",
+                size(), getHits(), getMisses(), getHitRate(), getEvictions());
+    }
+
+
+    private Segment segmentFor(Key key){
+        //use the high bits, since the low bits of the hash also pick the bucket inside the segment
+        int hash = key.hashCode();
+        return segments[((hash >>> 16) ^ hash) & (SEGMENTS - 1)];
+    }
+
+
+
+    /**
+     * A move chosen by the computer, and the score it was given.
+     */
+    public static final class CachedMove {
+        private final int square;
+        private final int score;
+
+
+        /**
+         * @param square the square of the move, numbered as x * 8 + y.
+         * @param score the score the move was given.
+         */
+        public CachedMove(int square, int score){
+            this.square = square;
+            this.score = score;
+        }
+
+
+        public int getSquare(){
+            return square;
+        }
+
+
+        public int getScore(){
+            return score;
+        }
+    }
+
+
+
+    /**
+     * A position in canonical form, as the key of the cache.
+     */
+    private static final class Key {
+        private final long black, white;
+        private final boolean whiteToMove;
+        private final long evaluatorId;
+
+
+        Key(long black, long white, boolean whiteToMove, long evaluatorId){
+            this.black = black;
+            this.white = white;
+            this.whiteToMove = whiteToMove;
+            this.evaluatorId = evaluatorId;
+        }
+
+
+        @Override
+        public boolean equals(Object other){
+            if(!(other instanceof Key)){
+                return false;
+            }
+
+            Key key = (Key) other;
+            return black == key.black && white == key.white
+                    && whiteToMove == key.whiteToMove && evaluatorId == key.evaluatorId;
+        }
+
+
+        @Override
+        public int hashCode(){
+            long hash = black * 0x9E3779B97F4A7C15L;
+            hash = (hash ^ white) * 0xC2B2AE3D27D4EB4FL;
+            hash = (hash ^ evaluatorId) * 0x165667B19E3779F9L;
+            hash ^= (whiteToMove ? 1 : 0);
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+
+
+
+    /**
+     * One separately locked part of the cache, which evicts its least recently used position
+     * once it is full.
+     */
+    private final class Segment {
+        private final int capacity;
+
+        //iterates in access order, so the first entry is the least recently used
+        private final LinkedHashMap<Key, CachedMove> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+
+        Segment(int capacity){
+            this.capacity = capacity;
+        }
+
+
+        synchronized CachedMove get(Key key){
+            return entries.get(key);
+        }
+
+
+        synchronized void put(Key key, CachedMove value){
+            entries.put(key, value);
+            if(entries.size() > capacity){
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+
+
+        synchronized int size(){
+            return entries.size();
+        }
+
+
+        synchronized void clear(){
+            entries.clear();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -33,12 +34,29 @@ public class OthelloGreedyAlgorithm implements OthelloModel {
     private int blackPieces, whitePieces;
     private boolean playersTurn;
     private boolean gameIsRunning = false;
+    private final MoveCache moveCache;
 
 
 
+    /**
+     * Creates a model that doesn't cache computer moves. Counting captures is cheaper than
+     * looking a position up in a {@link MoveCache}, so caching would only slow this model down.
+     */
     public OthelloGreedyAlgorithm(){
+        this(null);
+    }
+
+
+    /**
+     * Creates a model whose computer moves are cached in the specified cache.
+     *
+     * @param moveCache the cache to look up and store computer moves in, or null to always
+     *                  calculate them from scratch.
+     */
+    public OthelloGreedyAlgorithm(MoveCache moveCache){
         this.greenSpots = new LinkedList<>();
         this.nonGreenSpots = new HashMap<>();
+        this.moveCache = moveCache;
     }
 
 
@@ -139,35 +157,180 @@ public class OthelloGreedyAlgorithm implements OthelloModel {
 
     @Override
     public List<Point> takeComputerTurn() {
+        checkComputersTurn();
+
+        Point chosenMove = chooseComputerMove();
+        if(chosenMove == null){
+            return null;
+        }
+
+        return applyComputerMove(chosenMove);
+    }
+
+
+    @Override
+    public List<Point> takeComputerTurn(Point computerMove) throws IllegalMoveException {
+        checkComputersTurn();
+        if(nonGreenSpots.containsKey(computerMove)){
+            throw new IllegalMoveException("the computer can only go in unoccupied spots");
+        }
+        if(getCaptureCount(computerMove, TileColor.BLACK) == 0){
+            throw new IllegalMoveException("the computer can only go in spots that cause at least one piece to be captured.");
+        }
+
+        return applyComputerMove(new Point(computerMove));//deep copy
+    }
+
+
+    /**
+     * Makes sure the game is still going and it is the computers turn.
+     *
+     * @throws IllegalStateException if the computer is not allowed to go right now.
+     */
+    private void checkComputersTurn(){
         if(!gameIsRunning){
             throw new IllegalStateException("Computer turn was requested when the game is already over.");
         }
         if(playersTurn){
             throw new IllegalStateException("Computer turn was requested when it was the players turn to go.");
         }
+    }
+
+
+    /**
+     * Picks the computer's move, using the move cache if this position (or one equivalent to it)
+     * was already solved, and storing the move in the cache otherwise.
+     *
+     * @return the chosen move, or null if the computer has no legal moves.
+     */
+    protected Point chooseComputerMove(){
+        if(moveCache == null){
+            return toPoint(findBestComputerMove());
+        }
+
+        long black = getBitboard(TileColor.BLACK);
+        long white = getBitboard(TileColor.WHITE);
+        MoveCache.CachedMove cached = moveCache.lookup(black, white, false, getEvaluatorId());
+        if(cached != null){
+            return toPoint(cached);
+        }
+
+        MoveCache.CachedMove best = findBestComputerMove();
+        if(best != null){
+            moveCache.store(black, white, false, getEvaluatorId(), best);
+        }
+
+        return toPoint(best);
+    }
+
+
+    /**
+     * Converts a move from the move cache to a position on the board.
+     *
+     * @param move the move, which may be null.
+     * @return the position of the move, or null if there is no move.
+     */
+    private static Point toPoint(MoveCache.CachedMove move){
+        if(move == null){
+            return null;
+        }
 
-        //find the position that captures the most spots
-        int maxCaptured = 0;
+        return new Point(move.getSquare() / DIMENSIONS, move.getSquare() % DIMENSIONS);
+    }
+
+
+    /**
+     * Looks at all the legal moves available to the computer and picks the one that
+     * {@link OthelloGreedyAlgorithm#evaluateMove evaluateMove} scores the highest.
+     *
+     * @return the chosen move and its score, or null if the computer has no legal moves.
+     */
+    protected MoveCache.CachedMove findBestComputerMove(){
+        int maxScore = Integer.MIN_VALUE;
         Point maxPosition = null;
         for(Point p : greenSpots){
-            int count = getCaptureCount(p, TileColor.BLACK);
-            if(count >= maxCaptured){
-                maxCaptured = count;
+            if(getCaptureCount(p, TileColor.BLACK) == 0){   //not a legal move
+                continue;
+            }
+
+            int score = evaluateMove(p, TileColor.BLACK);
+            if(score >= maxScore){
+                maxScore = score;
                 maxPosition = p;
             }
         }
 
+        if(maxPosition == null){
+            return null;
+        }
 
+        return new MoveCache.CachedMove(maxPosition.x * DIMENSIONS + maxPosition.y, maxScore);
+    }
 
-        List<Point> tilesFlipped = getCapturedSpots(maxPosition, false);
-        tilesFlipped.add(maxPosition);
+
+    /**
+     * Scores a legal move for the specified player. Higher scores are better. This
+     * implementation simply counts how many pieces the move captures.
+     *
+     * @param move the move being considered.
+     * @param playerDoingMove the player who is considering making the move.
+     * @return the score of the move.
+     */
+    protected int evaluateMove(Point move, TileColor playerDoingMove){
+        return getCaptureCount(move, playerDoingMove);
+    }
+
+
+    /**
+     * Identifies the evaluation used by {@link OthelloGreedyAlgorithm#evaluateMove evaluateMove},
+     * so that models with different evaluations don't share cached moves. Subclasses that change
+     * the evaluation must override this.
+     *
+     * @return a number that is the same for every model that evaluates moves the same way.
+     */
+    protected long getEvaluatorId(){
+        return 0;
+    }
+
+
+    /**
+     * Collects the positions of all the pieces of the specified color into a bitboard, where
+     * the bit x * 8 + y is set if the spot (x, y) holds one of those pieces.
+     *
+     * @param color the color of the pieces to collect.
+     * @return the bitboard of those pieces.
+     */
+    protected long getBitboard(TileColor color){
+        long bitboard = 0;
+        for(Map.Entry<Point, TileColor> entry : nonGreenSpots.entrySet()){
+            if(entry.getValue() == color){
+                Point p = entry.getKey();
+                bitboard |= 1L << (p.x * DIMENSIONS + p.y);
+            }
+        }
+
+        return bitboard;
+    }
+
+
+    /**
+     * Makes the specified move for the computer, and updates the board, the score and whose
+     * turn it is. The move must already be known to be legal.
+     *
+     * @param chosenMove the move the computer is making.
+     * @return a list of positions that changed color as a result of the move, including the
+     *          actual spot the computer went in.
+     */
+    protected List<Point> applyComputerMove(Point chosenMove){
+        List<Point> tilesFlipped = getCapturedSpots(chosenMove, false);
+        tilesFlipped.add(chosenMove);
 
 
         //update greenSpots and nonGreenSpots
         for(Point p : tilesFlipped){
             nonGreenSpots.put(p, TileColor.BLACK);
         }
-        greenSpots.remove(maxPosition);
+        greenSpots.remove(chosenMove);
 
 
         playersTurn = true;
@@ -372,4 +535,16 @@ public class OthelloGreedyAlgorithm implements OthelloModel {
     }
 
 
+    @Override
+    public int getNumberOfEmptySpots() {
+        return greenSpots.size();
+    }
+
+
+    @Override
+    public HashMap<Point, TileColor> getBoard() {
+        return new HashMap<Point, TileColor>(nonGreenSpots);//deep copy
+    }
+
+
 }
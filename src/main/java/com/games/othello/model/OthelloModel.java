@@ -50,6 +50,22 @@ public interface OthelloModel {
     List<Point> takeComputerTurn();
 
 
+
+    /**
+     * Makes a move for the computer that was chosen somewhere else, for example by a search
+     * running in the background, instead of letting the model pick one.
+     *
+     * @param computerMove the position the computer should go.
+     *
+     * @return a list of positions that changed color as a result of the computers move. This
+     *              includes the actual spot the computer went in.
+     *
+     * @throws IllegalMoveException if the chosen move is not a green spot or if that
+     *              move does not cause any other spots to change color.
+     */
+    List<Point> takeComputerTurn(Point computerMove) throws IllegalMoveException;
+
+
     /**
      * Returns true if it is the players turn, and false if it's the computers turn.
      *
@@ -90,4 +106,22 @@ public interface OthelloModel {
      * @return the number of pieces on the board that are currently white.
      */
     int getScoreOfWhitePlayer();
+
+
+    /**
+     * Returns the number of spots on the board that are still green. This is a rough measure
+     * of how far along the game is.
+     *
+     * @return the number of unoccupied spots on the board.
+     */
+    int getNumberOfEmptySpots();
+
+
+    /**
+     * Returns the current contents of the board.
+     *
+     * @return a HashMap containing all the positions on the game board that are currently
+     *      non-green. All positions on the board that are not contained in the HashMap are green.
+     */
+    HashMap<Point, TileColor> getBoard();
 }
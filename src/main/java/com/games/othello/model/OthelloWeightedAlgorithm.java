@@ -0,0 +1,184 @@
+package com.games.othello.model;
+
+import com.games.othello.TileColor;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>Implementation of the {@link OthelloModel OthelloModel interface} that has the computer make
+ * the move that leads to the best position according to a set of {@link EvaluationWeights}, which
+ * are usually tuned from self-play games.</p>
+ *
+ * <p>A position is described by a small array of features, always from the point of view of one
+ * of the players. Features 0 to 9 count the difference between that player's pieces and the
+ * opponent's pieces on each class of square, where squares that map onto each other by rotating
+ * or reflecting the board are in the same class (corners, X-squares, and so on). Feature 10 is the
+ * difference between the number of legal moves each side has.</p>
+ */
+public class OthelloWeightedAlgorithm extends OthelloGreedyAlgorithm {
+
+    public static final int NUM_SQUARE_CLASSES = 10;
+    public static final int MOBILITY_FEATURE = NUM_SQUARE_CLASSES;
+    public static final int NUM_FEATURES = NUM_SQUARE_CLASSES + 1;
+
+    //one square from each class, all in the top left quarter of the board
+    private static final int[][] CLASS_SQUARES = new int[][]{
+            {0, 0}, {0, 1}, {0, 2}, {0, 3}, {1, 1}, {1, 2}, {1, 3}, {2, 2}, {2, 3}, {3, 3}
+    };
+    private static final int[][] SQUARE_CLASS = new int[DIMENSIONS][DIMENSIONS];
+
+    static {
+        for(int i = 0; i < DIMENSIONS; i++){
+            for(int j = 0; j < DIMENSIONS; j++){
+                //fold the square into the top left quarter, and then below the diagonal
+                int a = Math.min(i, DIMENSIONS - 1 - i);
+                int b = Math.min(j, DIMENSIONS - 1 - j);
+                int row = Math.min(a, b);
+                int col = Math.max(a, b);
+
+                for(int c = 0; c < CLASS_SQUARES.length; c++){
+                    if(CLASS_SQUARES[c][0] == row && CLASS_SQUARES[c][1] == col){
+                        SQUARE_CLASS[i][j] = c;
+                    }
+                }
+            }
+        }
+    }
+
+    private final EvaluationWeights weights;
+    private final byte[] features = new byte[NUM_FEATURES];    //scratch space for evaluateMove
+
+
+
+    public OthelloWeightedAlgorithm(EvaluationWeights weights){
+        this(weights, MoveCache.shared());
+    }
+
+
+    /**
+     * Creates a model whose computer moves are cached in the specified cache.
+     *
+     * @param weights the weights to evaluate positions with.
+     * @param moveCache the cache to look up and store computer moves in, or null to always
+     *                  calculate them from scratch.
+     */
+    public OthelloWeightedAlgorithm(EvaluationWeights weights, MoveCache moveCache){
+        super(moveCache);
+        if(weights == null){
+            throw new IllegalArgumentException("weights are required");
+        }
+
+        this.weights = weights;
+    }
+
+
+    /**
+     * Returns the weights this algorithm evaluates positions with.
+     *
+     * @return the evaluation weights.
+     */
+    public EvaluationWeights getWeights(){
+        return weights;
+    }
+
+
+    @Override
+    protected long getEvaluatorId(){
+        return weights.fingerprint();
+    }
+
+
+    /**
+     * Returns the square that represents the specified square class, from the top left
+     * quarter of the board.
+     *
+     * @param squareClass the index of the square class.
+     * @return an array holding the x and y index of the square.
+     */
+    public static int[] representativeSquare(int squareClass){
+        return CLASS_SQUARES[squareClass].clone();
+    }
+
+
+    /**
+     * Returns the index of the square class the specified square belongs to.
+     *
+     * @param x the x index of the square.
+     * @param y the y index of the square.
+     * @return the index of its square class, which is also the index of its feature.
+     */
+    static int squareClass(int x, int y){
+        return SQUARE_CLASS[x][y];
+    }
+
+
+    /**
+     * Scores a move by temporarily making it, and evaluating the resulting position from the point
+     * of view of the player making the move. The board is restored before this method returns.
+     *
+     * @param move the move being considered.
+     * @param playerDoingMove the player who is considering making the move.
+     * @return the estimated final disc differential for the player after the move, in hundredths
+     *          of a disc.
+     */
+    @Override
+    protected int evaluateMove(Point move, TileColor playerDoingMove){
+        final TileColor opponent = (playerDoingMove == TileColor.WHITE ? TileColor.BLACK : TileColor.WHITE);
+        List<Point> tilesFlipped = getCapturedSpots(move, playerDoingMove == TileColor.WHITE);
+
+        //make the move
+        for(Point p : tilesFlipped){
+            nonGreenSpots.put(p, playerDoingMove);
+        }
+        nonGreenSpots.put(move, playerDoingMove);
+
+        extractFeatures(playerDoingMove, features, 0);
+
+        //undo the move
+        for(Point p : tilesFlipped){
+            nonGreenSpots.put(p, opponent);
+        }
+        nonGreenSpots.remove(move);
+
+        return (int) Math.round(weights.evaluate(features, 0) * 100);
+    }
+
+
+    /**
+     * Calculates the features of the current position from the point of view of the specified
+     * player, and stores them in the specified array. Spots in greenSpots that are occupied in
+     * nonGreenSpots (because a move is being tried out) are treated as occupied.
+     *
+     * @param perspective the player whose point of view the features are calculated from.
+     * @param output the array the features are stored in.
+     * @param offset the index in the array where the first feature should be stored.
+     */
+    protected void extractFeatures(TileColor perspective, byte[] output, int offset){
+        final TileColor opponent = (perspective == TileColor.WHITE ? TileColor.BLACK : TileColor.WHITE);
+        int[] totals = new int[NUM_FEATURES];
+
+        for(Map.Entry<Point, TileColor> entry : nonGreenSpots.entrySet()){
+            Point p = entry.getKey();
+            totals[SQUARE_CLASS[p.x][p.y]] += (entry.getValue() == perspective ? 1 : -1);
+        }
+
+        for(Point p : greenSpots){
+            if(nonGreenSpots.containsKey(p)){
+                continue;
+            }
+            if(getCaptureCount(p, perspective) > 0){
+                totals[MOBILITY_FEATURE]++;
+            }
+            if(getCaptureCount(p, opponent) > 0){
+                totals[MOBILITY_FEATURE]--;
+            }
+        }
+
+        for(int i = 0; i < NUM_FEATURES; i++){
+            output[offset + i] = (byte) totals[i];
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.games.othello.model;
+
+import java.awt.Point;
+
+
+/**
+ * <p>Decides how long the computer should spend thinking about each move, based on the time
+ * left on its clock, how far along the game is, and how its search is going.</p>
+ *
+ * <p>Each move gets a {@link Budget Budget}, which starts from the clock and the phase of the game,
+ * and is then lengthened or shortened as the search reports each depth it finishes. If the best
+ * move keeps changing, or its score falls as the search gets deeper, the computer thinks longer.
+ * If the best move stays the same, it thinks less.</p>
+ *
+ * <p>Every budget is capped by a hard stop that always leaves a safety reserve on the clock, so
+ * following the budget can never cause the computer to lose on time.</p>
+ */
+public class TimeManager {
+
+    //the least time the computer will take for a move, if the clock allows it
+    private static final long MIN_THINK_MILLIS = 100;
+
+    //time that is always left on the clock to absorb timer and scheduling delays
+    private static final long SAFETY_MARGIN_MILLIS = 250;
+
+    //we never plan as if fewer than this many moves are left, so we don't burn the clock near the end
+    private static final int MIN_MOVES_TO_GO = 6;
+
+    //how much of each increment we expect to spend on the move it was given for
+    private static final double INCREMENT_USAGE = 0.8;
+
+    //how many times the base budget a single very unstable move is allowed to take
+    private static final double MAX_OVERSHOOT = 3.0;
+
+    //boundaries (in empty spots) between the opening, midgame, and endgame
+    private static final int OPENING_EMPTY_SPOTS = 44;
+    private static final int ENDGAME_EMPTY_SPOTS = 16;
+
+    //the budget is scaled by STABLE_FACTOR + CHANGE_WEIGHT * (recent best move changes), where each
+    //change counts for less by CHANGE_DECAY with every depth that finishes after it
+    private static final double STABLE_FACTOR = 0.6;
+    private static final double CHANGE_WEIGHT = 0.6;
+    private static final double CHANGE_DECAY = 0.5;
+
+    //a fall in the best score of this many hundredths of a disc makes the budget 50% longer
+    private static final int SCORE_FALL_SCALE = 200;
+
+
+
+    /**
+     * Creates the budget for the computer's next move, before its search has found anything.
+     *
+     * @param remainingMillis the time left on the computer's clock.
+     * @param incrementMillis the increment the computer will receive after this move.
+     * @param emptySpots the number of spots on the board that are still green.
+     * @return the budget, to be updated as the search finishes each depth.
+     */
+    public Budget allocate(long remainingMillis, long incrementMillis, int emptySpots){
+        return new Budget(baseBudget(remainingMillis, incrementMillis, emptySpots) * phaseWeight(emptySpots),
+                hardStop(remainingMillis, incrementMillis, emptySpots));
+    }
+
+
+    /**
+     * Calculates the longest the computer may ever think about a single move with the specified
+     * clock. This leaves a safety reserve on the clock and stops a single move from using up much
+     * more than its share of the remaining time.
+     *
+     * @param remainingMillis the time left on the computer's clock.
+     * @param incrementMillis the increment the computer will receive after this move.
+     * @param emptySpots the number of spots on the board that are still green.
+     * @return the hard limit, in milliseconds, for the computer's next move. Never negative.
+     */
+    public long hardStop(long remainingMillis, long incrementMillis, int emptySpots){
+        long reserve = Math.max(SAFETY_MARGIN_MILLIS, remainingMillis / 20);
+        long overshoot = (long) (baseBudget(remainingMillis, incrementMillis, emptySpots) * MAX_OVERSHOOT);
+
+        return Math.max(0, Math.min(remainingMillis - reserve, overshoot));
+    }
+
+
+    /**
+     * Splits the remaining time evenly over the moves the computer is expected to still make.
+     */
+    private double baseBudget(long remainingMillis, long incrementMillis, int emptySpots){
+        //the computer makes about half of the moves that are left
+        int movesToGo = Math.max(MIN_MOVES_TO_GO, (emptySpots + 1) / 2);
+
+        return (double) Math.max(0, remainingMillis) / movesToGo + incrementMillis * INCREMENT_USAGE;
+    }
+
+
+    /**
+     * Opening moves are mostly routine, while the midgame is where the game is usually decided.
+     */
+    private double phaseWeight(int emptySpots){
+        if(emptySpots > OPENING_EMPTY_SPOTS){
+            return 0.6;
+        }
+        else if(emptySpots > ENDGAME_EMPTY_SPOTS){
+            return 1.25;
+        }
+        else{
+            return 1.0;
+        }
+    }
+
+
+
+    /**
+     * How long the computer may think about one move. The soft limit changes as the search
+     * reports its progress, but never goes past the hard stop, which is fixed when the budget
+     * is created.
+     */
+    public static final class Budget {
+        private final double base;
+        private final long hardStop;
+
+        //the score of the best move at each depth that was reported, or null if it wasn't
+        private final Integer[] scoreAtDepth = new Integer[OthelloModel.DIMENSIONS * OthelloModel.DIMENSIONS + 1];
+        private int lastDepth = 0;
+        private Point lastBestMove = null;
+        private double bestMoveChanges = 0;
+        private double moveFactor = 1.0;
+        private double scoreFactor = 1.0;
+
+
+        Budget(double base, long hardStop){
+            this.base = base;
+            this.hardStop = hardStop;
+        }
+
+
+        /**
+         * Adjusts the budget after the search finishes another depth. Depths that were already
+         * reported are ignored, and depths the caller didn't see finish may be skipped.
+         *
+         * @param depth the depth the search finished for every legal move.
+         * @param bestMove the best move found at that depth.
+         * @param score the score of the best move, in hundredths of a disc.
+         */
+        public void depthCompleted(int depth, Point bestMove, int score){
+            if(depth <= lastDepth || depth >= scoreAtDepth.length){
+                return;
+            }
+
+            if(lastBestMove != null){
+                bestMoveChanges = bestMoveChanges * CHANGE_DECAY + (bestMove.equals(lastBestMove) ? 0 : 1);
+                moveFactor = STABLE_FACTOR + CHANGE_WEIGHT * bestMoveChanges;
+            }
+
+            //odd and even depths score positions differently, so only compare depths of the same parity
+            if(depth >= 2 && scoreAtDepth[depth - 2] != null){
+                double fall = (double) (scoreAtDepth[depth - 2] - score) / SCORE_FALL_SCALE;
+                scoreFactor = 1 + 0.5 * Math.max(-0.5, Math.min(1.0, fall));
+            }
+
+            scoreAtDepth[depth] = score;
+            lastDepth = depth;
+            lastBestMove = new Point(bestMove);
+        }
+
+
+        /**
+         * Returns how long the computer should think for, given what the search reported so far.
+         *
+         * @return the number of milliseconds, since the computer started thinking, after which it
+         *          should play. This is never more than {@link #getHardStopMillis()}.
+         */
+        public long getSoftMillis(){
+            long soft = (long) (base * moveFactor * scoreFactor);
+            return Math.max(Math.min(soft, hardStop), Math.min(MIN_THINK_MILLIS, hardStop));
+        }
+
+
+        /**
+         * Returns the longest the computer may think for, however the search is going.
+         *
+         * @return the hard limit, in milliseconds, as calculated by {@link TimeManager#hardStop}.
+         */
+        public long getHardStopMillis(){
+            return hardStop;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package com.games.othello.training;
+
+import com.games.othello.model.EvaluationWeights;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * <p>Splits a self-play data generation run between several worker processes, which may be
+ * started by the coordinator itself or by hand on the same host (see {@link SelfPlayWorker}).
+ * No external message broker is needed.</p>
+ *
+ * <p>The games are divided into jobs of consecutive game indexes, which are handed out to workers
+ * over a local TCP socket. Each finished job is written to its own file in a work directory, and
+ * once every job is finished the files are merged in job order. Since every game's seed depends
+ * only on the run's seed and the game's index, the output is exactly what
+ * {@link SelfPlayGenerator} writes with the same seed and weights, however many workers there
+ * were and whatever happened to them.</p>
+ *
+ * <p>If a worker disconnects or doesn't finish a job in time, the job goes back to the front of
+ * the queue for another worker. Local workers that die are restarted, up to a limit.</p>
+ */
+public class SelfPlayCoordinator {
+
+    static final int PROTOCOL_MAGIC = 0x4F544831;  //"OTH1"
+    static final int NO_MORE_JOBS = -1;
+
+    private static final long SUPERVISE_INTERVAL_MILLIS = 500;
+    private static final int RESTARTS_PER_WORKER = 5;
+
+    private final EvaluationWeights weights;
+    private final long seed;
+    private final long games;
+    private final int gamesPerJob;
+    private final int jobTimeoutMillis;
+
+    private final int jobCount;
+    private final BlockingDeque<Integer> pendingJobs = new LinkedBlockingDeque<>();
+    private final boolean[] finishedJobs;
+    private final CountDownLatch allJobsFinished;
+    private Path workDirectory;
+
+
+
+    /**
+     * Creates a coordinator.
+     *
+     * @param weights the weights the games are played with.
+     * @param seed the seed all the game seeds are derived from.
+     * @param games the number of games to play.
+     * @param gamesPerJob the number of games handed to a worker at once.
+     * @param jobTimeoutMillis how long a worker may take on a single job before it is
+     *                         presumed dead and the job is given to another worker.
+     */
+    public SelfPlayCoordinator(EvaluationWeights weights, long seed, long games, int gamesPerJob, int jobTimeoutMillis){
+        if(games <= 0 || gamesPerJob <= 0){
+            throw new IllegalArgumentException("the number of games and games per job must be positive");
+        }
+
+        this.weights = weights;
+        this.seed = seed;
+        this.games = games;
+        this.gamesPerJob = gamesPerJob;
+        this.jobTimeoutMillis = jobTimeoutMillis;
+
+        long jobs = (games + gamesPerJob - 1) / gamesPerJob;
+        if(jobs > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("too many jobs, use more games per job");
+        }
+        this.jobCount = (int) jobs;
+        this.finishedJobs = new boolean[jobCount];
+        this.allJobsFinished = new CountDownLatch(jobCount);
+        for(int job = 0; job < jobCount; job++){
+            pendingJobs.add(job);
+        }
+    }
+
+
+    /**
+     * Runs the whole generation and writes the merged results.
+     *
+     * @param port the local port to listen on, or 0 to pick any free port.
+     * @param localWorkers the number of worker processes to start on this host. Workers can also
+     *                     be started separately and pointed at the printed port.
+     * @param outputFile the file to write the training records to. It is replaced if it exists.
+     * @throws IOException if the socket can't be opened or the files can't be written.
+     * @throws InterruptedException if the thread is interrupted while waiting for the workers.
+     */
+    public void run(int port, int localWorkers, Path outputFile) throws IOException, InterruptedException {
+        Path parent = outputFile.toAbsolutePath().getParent();
+        workDirectory = Files.createTempDirectory(parent, outputFile.getFileName() + ".jobs");
+
+        try{
+            playAllJobs(port, localWorkers);
+            mergeJobs(outputFile);
+        }
+        finally{
+            deleteWorkDirectory();
+        }
+    }
+
+
+    /**
+     * Serves jobs to workers until every job is finished, starting and supervising the local workers.
+     */
+    private void playAllJobs(int port, int localWorkers) throws IOException, InterruptedException {
+        List<Process> workers = new ArrayList<>();
+
+        try(ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())){
+            System.err.printf("coordinator listening on port %d, %d jobs of up to %d games%n",
+                    server.getLocalPort(), jobCount, gamesPerJob);
+
+            Thread acceptor = new Thread(() -> acceptWorkers(server), "coordinator-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            for(int i = 0; i < localWorkers; i++){
+                workers.add(startLocalWorker(server.getLocalPort()));
+            }
+            superviseLocalWorkers(workers, server.getLocalPort(), localWorkers * RESTARTS_PER_WORKER);
+        }
+        finally{
+            for(Process worker : workers){
+                worker.destroy();
+            }
+        }
+    }
+
+
+    /**
+     * Waits for every job to finish, restarting local workers that die in the meantime.
+     */
+    private void superviseLocalWorkers(List<Process> workers, int port, int restartsAllowed)
+            throws IOException, InterruptedException {
+        int restarts = 0;
+
+        while(!allJobsFinished.await(SUPERVISE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)){
+            for(int i = 0; i < workers.size(); i++){
+                Process worker = workers.get(i);
+                if(worker.isAlive()){
+                    continue;
+                }
+                if(restarts == restartsAllowed){
+                    throw new IOException("local workers died " + restarts + " times, giving up");
+                }
+
+                System.err.printf("local worker exited with code %d, restarting it%n", worker.exitValue());
+                workers.set(i, startLocalWorker(port));
+                restarts++;
+            }
+        }
+    }
+
+
+    /**
+     * Starts a worker process that runs from the same Java installation and class path as this one.
+     */
+    private Process startLocalWorker(int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                SelfPlayWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(port))
+                .inheritIO()
+                .start();
+    }
+
+
+    /**
+     * Accepts worker connections until the server socket is closed, serving each on its own thread.
+     */
+    private void acceptWorkers(ServerSocket server){
+        while(!server.isClosed()){
+            try{
+                Socket socket = server.accept();
+                Thread handler = new Thread(() -> serveWorker(socket), "coordinator-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            }
+            catch(IOException e){
+                //the server socket was closed because all the work is done
+            }
+        }
+    }
+
+
+    /**
+     * Hands jobs to a single worker until there are none left, or the worker fails.
+     */
+    private void serveWorker(Socket socket){
+        Integer job = null;
+
+        try(Socket s = socket){
+            s.setSoTimeout(jobTimeoutMillis);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+
+            double[] values = weights.toArray();
+            out.writeInt(PROTOCOL_MAGIC);
+            out.writeLong(seed);
+            out.writeInt(values.length);
+            for(double value : values){
+                out.writeDouble(value);
+            }
+
+            while((job = nextJob()) != null){
+                long firstGame = (long) job * gamesPerJob;
+                int count = (int) Math.min(gamesPerJob, games - firstGame);
+                out.writeInt(job);
+                out.writeLong(firstGame);
+                out.writeInt(count);
+                out.flush();
+
+                int finished = in.readInt();
+                if(finished != job){
+                    throw new IOException("worker returned job " + finished + " when it was given job " + job);
+                }
+
+                //check the length before allocating, so a broken worker can't make us allocate any amount
+                int length = in.readInt();
+                long maxLength = (long) count * SelfPlayGenerator.MAX_RECORDS_PER_GAME * SelfPlayGenerator.RECORD_SIZE;
+                if(length < 0 || length % SelfPlayGenerator.RECORD_SIZE != 0 || length > maxLength){
+                    throw new IOException("worker returned " + length + " bytes for job " + job
+                            + ", which can't be the records of " + count + " games");
+                }
+                byte[] records = new byte[length];
+                in.readFully(records);
+
+                finishJob(job, records);
+                job = null;
+            }
+
+            out.writeInt(NO_MORE_JOBS);
+            out.flush();
+        }
+        catch(IOException | InterruptedException e){
+            System.err.printf("lost worker on port %d (%s)%n", socket.getPort(), e);
+        }
+        finally{
+            //whatever went wrong, the job must not be lost, or the run would never finish
+            if(job != null){
+                System.err.printf("retrying job %d%n", job);
+                pendingJobs.addFirst(job);
+            }
+        }
+    }
+
+
+    /**
+     * Waits for a job to become available.
+     *
+     * @return the next job, or null once every job is finished.
+     */
+    private Integer nextJob() throws InterruptedException {
+        //a job can come back to the queue while others are still running, so keep waiting until all are done
+        while(allJobsFinished.getCount() > 0){
+            Integer job = pendingJobs.poll(SUPERVISE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            if(job != null){
+                return job;
+            }
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Saves the results of a job, unless another worker already finished it.
+     */
+    private void finishJob(int job, byte[] records) throws IOException {
+        Path jobFile = jobFile(job);
+        synchronized(finishedJobs){
+            if(finishedJobs[job]){
+                return;
+            }
+
+            Files.write(jobFile, records);
+            finishedJobs[job] = true;
+        }
+
+        allJobsFinished.countDown();
+    }
+
+
+    /**
+     * Concatenates the results of every job in job order.
+     */
+    private void mergeJobs(Path outputFile) throws IOException {
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile))){
+            for(int job = 0; job < jobCount; job++){
+                Files.copy(jobFile(job), out);
+            }
+        }
+    }
+
+
+    /**
+     * Removes the work directory and any job files in it, whether or not the run succeeded.
+     * Failing to clean up only prints a warning, so it can't hide the error that ended the run.
+     */
+    private void deleteWorkDirectory(){
+        try{
+            for(int job = 0; job < jobCount; job++){
+                Files.deleteIfExists(jobFile(job));
+            }
+            Files.delete(workDirectory);
+        }
+        catch(IOException e){
+            System.err.printf("couldn't remove the work directory %s (%s)%n", workDirectory, e);
+        }
+    }
+
+
+    private Path jobFile(int job){
+        return workDirectory.resolve("job-" + job + ".bin");
+    }
+
+
+    /**
+     * Runs a coordinator from the command line.
+     *
+     * @param args the output file, the number of games, and optionally the number of local worker
+     *             processes to start (default: all processors), the port to listen on (default: any
+     *             free port), the seed (default: 1), and a weight file to play with (default: the
+     *             starting weights).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2){
+            System.err.println("usage: SelfPlayCoordinator <output file> <games> [local workers] [port] [seed] [weight file]");
+            System.exit(1);
+        }
+
+        Path output = Paths.get(args[0]);
+        long games = Long.parseLong(args[1]);
+        int localWorkers = (args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+        int port = (args.length > 3 ? Integer.parseInt(args[3]) : 0);
+        long seed = (args.length > 4 ? Long.parseLong(args[4]) : 1);
+        EvaluationWeights weights = (args.length > 5 ? EvaluationWeights.load(Paths.get(args[5])) : EvaluationWeights.initial());
+
+        long start = System.nanoTime();
+        new SelfPlayCoordinator(weights, seed, games, 64, 10 * 60 * 1000).run(port, localWorkers, output);
+        System.out.printf("wrote %d positions from %d games in %.1f seconds%n",
+                Files.size(output) / SelfPlayGenerator.RECORD_SIZE, games, (System.nanoTime() - start) / 1e9);
+    }
+}
@@ -0,0 +1,116 @@
+package com.games.othello.training;
+
+import com.games.othello.TileColor;
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.OthelloWeightedAlgorithm;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * <p>A single game where the computer plays against itself, recording every position along the
+ * way as training data. Both sides pick moves with the same evaluation, except that the first few
+ * moves, and a small fraction of the rest, are picked at random so that each game is different.</p>
+ *
+ * <p>Each position is recorded right after a move, as the features of the position from the point
+ * of view of the player who just moved, followed by that player's final disc differential.
+ * See {@link SelfPlayGenerator} for the exact record format.</p>
+ */
+class SelfPlayGame extends OthelloWeightedAlgorithm {
+
+    private static final int RANDOM_OPENING_MOVES = 8;
+    private static final double RANDOM_MOVE_CHANCE = 0.1;
+
+    private final Random random;
+
+
+
+    /**
+     * Creates a game that plays with the specified weights.
+     *
+     * @param weights the weights both sides evaluate moves with.
+     * @param seed the seed for the random moves. Games with the same weights and seed are identical.
+     */
+    SelfPlayGame(EvaluationWeights weights, long seed){
+        super(weights, null);     //self-play picks its own moves, so it never uses the move cache
+        this.random = new Random(seed);
+    }
+
+
+    /**
+     * Plays a full game and returns the recorded positions.
+     *
+     * @return the training records for every position in the game, one after the other.
+     */
+    byte[] play(){
+        startGame();
+
+        byte[] records = new byte[SelfPlayGenerator.MAX_RECORDS_PER_GAME * SelfPlayGenerator.RECORD_SIZE];
+        TileColor[] movers = new TileColor[SelfPlayGenerator.MAX_RECORDS_PER_GAME];
+        int moves = 0;
+
+        while(!isGameOver()){
+            TileColor mover = (isPlayersTurn() ? TileColor.WHITE : TileColor.BLACK);
+            Point move = pickMove(mover, moves);
+
+            if(mover == TileColor.WHITE){
+                takePlayerTurn(move);
+            }
+            else{
+                applyComputerMove(move);
+            }
+
+            extractFeatures(mover, records, moves * SelfPlayGenerator.RECORD_SIZE);
+            movers[moves] = mover;
+            moves++;
+        }
+
+        //now that the game is over, label every position with the final result
+        int blackLead = getScoreOfBlackPlayer() - getScoreOfWhitePlayer();
+        for(int i = 0; i < moves; i++){
+            int label = (movers[i] == TileColor.BLACK ? blackLead : -blackLead);
+            records[i * SelfPlayGenerator.RECORD_SIZE + SelfPlayGenerator.LABEL_OFFSET] = (byte) label;
+        }
+
+        return Arrays.copyOf(records, moves * SelfPlayGenerator.RECORD_SIZE);
+    }
+
+
+    /**
+     * Picks the next move for the specified player, either at random or the best one according
+     * to the evaluation.
+     *
+     * @param player the player whose turn it is.
+     * @param movesPlayed the number of moves played so far in this game.
+     * @return the chosen move. The game only continues while the player has a legal move, so
+     *          this is never null.
+     */
+    private Point pickMove(TileColor player, int movesPlayed){
+        List<Point> legalMoves = new ArrayList<>();
+        for(Point p : greenSpots){
+            if(getCaptureCount(p, player) > 0){
+                legalMoves.add(p);
+            }
+        }
+
+        if(movesPlayed < RANDOM_OPENING_MOVES || random.nextDouble() < RANDOM_MOVE_CHANCE){
+            return new Point(legalMoves.get(random.nextInt(legalMoves.size())));
+        }
+
+        int maxScore = Integer.MIN_VALUE;
+        Point maxPosition = null;
+        for(Point p : legalMoves){
+            int score = evaluateMove(p, player);
+            if(score >= maxScore){
+                maxScore = score;
+                maxPosition = p;
+            }
+        }
+
+        return new Point(maxPosition);
+    }
+}
@@ -0,0 +1,161 @@
+package com.games.othello.training;
+
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.OthelloWeightedAlgorithm;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * <p>Generates labeled training positions by playing many self-play games on several threads at
+ * once.</p>
+ *
+ * <p>The output is a flat binary file of fixed size records, with no header. Each record is
+ * {@link OthelloWeightedAlgorithm#NUM_FEATURES NUM_FEATURES} signed bytes holding the features of
+ * a position, followed by one signed byte holding the final disc differential of the player the
+ * features are calculated for.</p>
+ *
+ * <p>Every game gets its own seed, derived from the generator's seed and the index of the game,
+ * and games are written in order of their index. This means the same settings always produce
+ * exactly the same file, no matter how many threads are used.</p>
+ */
+public class SelfPlayGenerator {
+
+    public static final int RECORD_SIZE = OthelloWeightedAlgorithm.NUM_FEATURES + 1;
+    public static final int LABEL_OFFSET = OthelloWeightedAlgorithm.NUM_FEATURES;
+
+    //one record per move, and a game can't have more moves than there are empty squares at the start
+    public static final int MAX_RECORDS_PER_GAME = 60;
+
+    //games are handed to the threads in batches, to keep the overhead per task low
+    private static final int GAMES_PER_BATCH = 64;
+
+    private final EvaluationWeights weights;
+    private final long seed;
+
+
+
+    /**
+     * Creates a generator.
+     *
+     * @param weights the weights the games are played with.
+     * @param seed the seed all the game seeds are derived from.
+     */
+    public SelfPlayGenerator(EvaluationWeights weights, long seed){
+        this.weights = weights;
+        this.seed = seed;
+    }
+
+
+    /**
+     * Plays a range of games on the calling thread.
+     *
+     * @param firstGame the index of the first game to play.
+     * @param count the number of games to play.
+     * @return the training records of all the games, in order of the game index.
+     */
+    public byte[] playBatch(long firstGame, int count){
+        ByteArrayOutputStream output = new ByteArrayOutputStream(count * MAX_RECORDS_PER_GAME * RECORD_SIZE);
+        for(long game = firstGame; game < firstGame + count; game++){
+            byte[] records = new SelfPlayGame(weights, gameSeed(game)).play();
+            output.write(records, 0, records.length);
+        }
+
+        return output.toByteArray();
+    }
+
+
+    /**
+     * Plays the specified number of games and writes all their positions to a file.
+     *
+     * @param games the number of games to play.
+     * @param threads the number of threads to play them on.
+     * @param outputFile the file to write the training records to. It is replaced if it exists.
+     * @return the number of positions written.
+     * @throws IOException if the file can't be written.
+     * @throws InterruptedException if the thread is interrupted while waiting for the games.
+     */
+    public long generate(long games, int threads, Path outputFile) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        //only keep a few batches in flight, so finished batches don't pile up in memory
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        final int maxPending = threads * 4;
+        long bytesWritten = 0;
+
+        try(OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputFile))){
+            long nextGame = 0;
+            while(nextGame < games || !pending.isEmpty()){
+                if(nextGame < games && pending.size() < maxPending){
+                    final long first = nextGame;
+                    final int count = (int) Math.min(GAMES_PER_BATCH, games - nextGame);
+                    pending.add(pool.submit(() -> playBatch(first, count)));
+                    nextGame += count;
+                }
+                else{
+                    byte[] records = pending.remove().get();
+                    out.write(records);
+                    bytesWritten += records.length;
+                }
+            }
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("a self-play game failed", e.getCause());
+        }
+        finally{
+            pool.shutdownNow();
+        }
+
+        return bytesWritten / RECORD_SIZE;
+    }
+
+
+    /**
+     * Derives the seed of a single game from the generator's seed, so that nearby game
+     * indexes get unrelated seeds.
+     */
+    private long gameSeed(long game){
+        long z = seed + (game + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+
+    /**
+     * Generates training data from the command line.
+     *
+     * @param args the output file, the number of games, and optionally the number of threads
+     *             (default: all processors), the seed (default: 1), and a weight file to play
+     *             with (default: the starting weights).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2){
+            System.err.println("usage: SelfPlayGenerator <output file> <games> [threads] [seed] [weight file]");
+            System.exit(1);
+        }
+
+        Path output = Paths.get(args[0]);
+        long games = Long.parseLong(args[1]);
+        int threads = (args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors());
+        long seed = (args.length > 3 ? Long.parseLong(args[3]) : 1);
+        EvaluationWeights weights = (args.length > 4 ? EvaluationWeights.load(Paths.get(args[4])) : EvaluationWeights.initial());
+
+        long start = System.nanoTime();
+        long positions = new SelfPlayGenerator(weights, seed).generate(games, threads, output);
+        System.out.printf("wrote %d positions from %d games in %.1f seconds%n",
+                positions, games, (System.nanoTime() - start) / 1e9);
+    }
+}
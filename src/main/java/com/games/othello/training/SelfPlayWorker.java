@@ -0,0 +1,116 @@
+package com.games.othello.training;
+
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.OthelloWeightedAlgorithm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+
+
+/**
+ * <p>A worker process for {@link SelfPlayCoordinator}. It connects to the coordinator, receives
+ * the seed and weights to play with, and then plays one batch of self-play games after another
+ * until the coordinator says there is no more work.</p>
+ *
+ * <p>Workers keep no state between batches, so a worker that dies only costs the batch it was
+ * playing, which the coordinator hands to another worker.</p>
+ */
+public class SelfPlayWorker {
+
+    private static final int CONNECT_ATTEMPTS = 30;
+    private static final long CONNECT_RETRY_MILLIS = 1000;
+
+
+
+    private SelfPlayWorker(){
+    }
+
+
+    /**
+     * Connects to a coordinator and plays batches until all the work is done.
+     *
+     * @param host the host the coordinator runs on.
+     * @param port the port the coordinator listens on.
+     * @return the number of batches this worker played.
+     * @throws IOException if the connection to the coordinator fails.
+     * @throws InterruptedException if the thread is interrupted while waiting to connect.
+     */
+    public static int run(String host, int port) throws IOException, InterruptedException {
+        try(Socket socket = connect(host, port)){
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            //handshake: the protocol version, the seed, and the weights to play with
+            if(in.readInt() != SelfPlayCoordinator.PROTOCOL_MAGIC){
+                throw new IOException("the other side of " + host + ":" + port + " is not a self-play coordinator");
+            }
+            long seed = in.readLong();
+            double[] weights = new double[in.readInt()];
+            if(weights.length != OthelloWeightedAlgorithm.NUM_FEATURES){
+                throw new IOException("the coordinator uses " + weights.length + " features, but this worker uses "
+                        + OthelloWeightedAlgorithm.NUM_FEATURES);
+            }
+            for(int i = 0; i < weights.length; i++){
+                weights[i] = in.readDouble();
+            }
+
+            SelfPlayGenerator generator = new SelfPlayGenerator(new EvaluationWeights(weights), seed);
+            int batches = 0;
+
+            while(true){
+                int job = in.readInt();
+                if(job == SelfPlayCoordinator.NO_MORE_JOBS){
+                    return batches;
+                }
+                long firstGame = in.readLong();
+                int count = in.readInt();
+
+                byte[] records = generator.playBatch(firstGame, count);
+                out.writeInt(job);
+                out.writeInt(records.length);
+                out.write(records);
+                out.flush();
+                batches++;
+            }
+        }
+    }
+
+
+    /**
+     * Connects to the coordinator, retrying for a while in case it hasn't started listening yet.
+     */
+    private static Socket connect(String host, int port) throws IOException, InterruptedException {
+        for(int attempt = 1; ; attempt++){
+            try{
+                return new Socket(host, port);
+            }
+            catch(ConnectException e){
+                if(attempt == CONNECT_ATTEMPTS){
+                    throw e;
+                }
+                Thread.sleep(CONNECT_RETRY_MILLIS);
+            }
+        }
+    }
+
+
+    /**
+     * Runs a worker from the command line.
+     *
+     * @param args the host and port of the coordinator.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2){
+            System.err.println("usage: SelfPlayWorker <coordinator host> <coordinator port>");
+            System.exit(1);
+        }
+
+        int batches = run(args[0], Integer.parseInt(args[1]));
+        System.err.printf("worker finished after %d batches%n", batches);
+    }
+}
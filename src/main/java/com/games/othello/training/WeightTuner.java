@@ -0,0 +1,199 @@
+package com.games.othello.training;
+
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.OthelloWeightedAlgorithm;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * <p>Fits {@link EvaluationWeights} to the positions written by {@link SelfPlayGenerator}, using
+ * mini-batch gradient descent on the squared error between the evaluation of each position and
+ * its final disc differential.</p>
+ *
+ * <p>The training file is streamed from disk one mini-batch at a time, so it never has to fit in
+ * memory. Each mini-batch is split between several threads, which each calculate the gradient of
+ * their share of the batch, and the gradients are added together before the weights are updated.</p>
+ */
+public class WeightTuner {
+
+    private static final int NUM_FEATURES = OthelloWeightedAlgorithm.NUM_FEATURES;
+    private static final int RECORD_SIZE = SelfPlayGenerator.RECORD_SIZE;
+
+    private final int threads;
+    private final int batchSize;
+    private final double learningRate;
+    private final double regularization;
+
+
+
+    /**
+     * Creates a tuner.
+     *
+     * @param threads the number of threads each mini-batch is split between.
+     * @param batchSize the number of positions in each mini-batch.
+     * @param learningRate how far the weights move against the gradient after each mini-batch.
+     * @param regularization the strength of the L2 penalty that keeps the weights small.
+     */
+    public WeightTuner(int threads, int batchSize, double learningRate, double regularization){
+        if(threads <= 0 || batchSize <= 0){
+            throw new IllegalArgumentException("threads and batch size must be positive");
+        }
+
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.learningRate = learningRate;
+        this.regularization = regularization;
+    }
+
+
+    /**
+     * Trains weights on a training file.
+     *
+     * @param trainingFile the file of training records to read.
+     * @param start the weights to start from.
+     * @param epochs the number of passes to make over the training file.
+     * @return the trained weights.
+     * @throws IOException if the training file can't be read.
+     * @throws InterruptedException if the thread is interrupted while waiting for the gradients.
+     */
+    public EvaluationWeights train(Path trainingFile, EvaluationWeights start, int epochs)
+            throws IOException, InterruptedException {
+        double[] weights = start.toArray();
+        byte[] batch = new byte[batchSize * RECORD_SIZE];
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        try{
+            for(int epoch = 1; epoch <= epochs; epoch++){
+                double squaredError = 0;
+                long positions = 0;
+
+                try(InputStream in = new BufferedInputStream(Files.newInputStream(trainingFile), 1 << 20)){
+                    int records;
+                    while((records = readBatch(in, batch)) > 0){
+                        double[] gradient = new double[NUM_FEATURES + 1];   //the last slot holds the squared error
+                        for(Future<double[]> partial : pool.invokeAll(splitBatch(batch, records, weights))){
+                            double[] values = partial.get();
+                            for(int i = 0; i < gradient.length; i++){
+                                gradient[i] += values[i];
+                            }
+                        }
+
+                        for(int i = 0; i < NUM_FEATURES; i++){
+                            weights[i] -= learningRate * (gradient[i] / records + regularization * weights[i]);
+                        }
+                        squaredError += gradient[NUM_FEATURES];
+                        positions += records;
+                    }
+                }
+
+                System.out.printf("epoch %d: rms error %.3f discs over %d positions%n",
+                        epoch, Math.sqrt(squaredError / Math.max(1, positions)), positions);
+            }
+        }
+        catch(ExecutionException e){
+            throw new IllegalStateException("calculating a gradient failed", e.getCause());
+        }
+        finally{
+            pool.shutdownNow();
+        }
+
+        return new EvaluationWeights(weights);
+    }
+
+
+    /**
+     * Splits a mini-batch into one gradient task for each thread.
+     */
+    private List<Callable<double[]>> splitBatch(byte[] batch, int records, double[] weights){
+        List<Callable<double[]>> tasks = new ArrayList<>(threads);
+        int perThread = (records + threads - 1) / threads;
+
+        for(int first = 0; first < records; first += perThread){
+            final int from = first;
+            final int to = Math.min(records, first + perThread);
+            tasks.add(() -> gradient(batch, from, to, weights));
+        }
+
+        return tasks;
+    }
+
+
+    /**
+     * Calculates the gradient of the squared error over a range of records in a mini-batch.
+     *
+     * @return the gradient for each weight, followed by the total squared error of the range.
+     */
+    private static double[] gradient(byte[] batch, int from, int to, double[] weights){
+        double[] gradient = new double[NUM_FEATURES + 1];
+
+        for(int r = from; r < to; r++){
+            int offset = r * RECORD_SIZE;
+            double prediction = 0;
+            for(int i = 0; i < NUM_FEATURES; i++){
+                prediction += weights[i] * batch[offset + i];
+            }
+
+            double error = prediction - batch[offset + SelfPlayGenerator.LABEL_OFFSET];
+            for(int i = 0; i < NUM_FEATURES; i++){
+                gradient[i] += 2 * error * batch[offset + i];
+            }
+            gradient[NUM_FEATURES] += error * error;
+        }
+
+        return gradient;
+    }
+
+
+    /**
+     * Fills the buffer with as many whole records as are left in the stream.
+     *
+     * @return the number of records read, which is 0 at the end of the stream.
+     */
+    private static int readBatch(InputStream in, byte[] buffer) throws IOException {
+        int total = 0;
+        int read;
+        while(total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) > 0){
+            total += read;
+        }
+
+        return total / RECORD_SIZE;
+    }
+
+
+    /**
+     * Trains weights from the command line.
+     *
+     * @param args the training file, the weight file to write, and optionally the number of
+     *             epochs (default: 10), the number of threads (default: all processors), and a
+     *             weight file to start from (default: the starting weights).
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if(args.length < 2){
+            System.err.println("usage: WeightTuner <training file> <output weight file> [epochs] [threads] [start weight file]");
+            System.exit(1);
+        }
+
+        Path trainingFile = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        int epochs = (args.length > 2 ? Integer.parseInt(args[2]) : 10);
+        int threads = (args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors());
+        EvaluationWeights start = (args.length > 4 ? EvaluationWeights.load(Paths.get(args[4])) : EvaluationWeights.initial());
+
+        EvaluationWeights trained = new WeightTuner(threads, 16384, 0.002, 1e-6).train(trainingFile, start, epochs);
+        trained.save(output);
+        System.out.println(trained);
+    }
+}
@@ -1,9 +1,14 @@
 package com.games.othello.viewController;
 
 import com.games.othello.TileColor;
+import com.games.othello.model.AnalysisEngine;
+import com.games.othello.model.EvaluationWeights;
+import com.games.othello.model.GameClock;
 import com.games.othello.model.IllegalMoveException;
 import com.games.othello.model.OthelloGreedyAlgorithm;
 import com.games.othello.model.OthelloModel;
+import com.games.othello.model.OthelloWeightedAlgorithm;
+import com.games.othello.model.TimeManager;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -14,25 +19,73 @@ import java.util.HashMap;
 
 
 /**
- * Runs a game of Othello on a GUI.
+ * Runs a game of Othello on a GUI. In analysis mode, the score of every legal move for the side
+ * to move is shown on the board and refined in the background. The number of processor cores the
+ * analysis may use can be set with the othello.analysis.threads system property. While the
+ * computer is thinking, the board shows the computer's own search instead, so the two never
+ * compete for the processor.
  */
 public class OthelloGUI {
     private static final int DIMENSIONS = 8;
     private static final String SCORE_DISPLAY = "Black: %d \t White: %d";
+    private static final String CLOCK_DISPLAY = "Black: %s \t White: %s";
+    private static final long DEFAULT_TOTAL_MILLIS = 5 * 60 * 1000;
+    private static final long DEFAULT_INCREMENT_MILLIS = 3 * 1000;
+    private static final int CLOCK_REFRESH_MILLIS = 100;
+    private static final int THINK_POLL_MILLIS = 20;
+    private static final int ANALYSIS_REFRESH_MILLIS = 250;
+    private static final String ANALYSIS_DISPLAY = "<html><center>%+.2f<br>depth %d</center></html>";
     private final JFrame mainWindow = new JFrame();
     private final JPanel gameBoard = new JPanel();
     private final JPanel[][] boardPanels = new JPanel[DIMENSIONS][DIMENSIONS];
+    private final JLabel[][] analysisLabels = new JLabel[DIMENSIONS][DIMENSIONS];
     private final OthelloModel model;
     private final JLabel currentTurn = new JLabel();
     private final JLabel score = new JLabel();
+    private final JLabel clockDisplay = new JLabel();
+    private final JCheckBox analysisToggle = new JCheckBox("Analysis");
+    private final GameClock clock;
+    private final TimeManager timeManager = new TimeManager();
+    private TileColor outOfTime = null;     //the side that lost on time, if any
     private Timer timer;
+    private AnalysisEngine thinkingEngine;
+    private long thinkingStarted;       //System.nanoTime() when the computer started thinking
+    private TimeManager.Budget thinkingBudget;     //how long the computer may think this turn
+    private Timer clockTimer;
+    private AnalysisEngine analysisEngine;
+    private Timer analysisTimer;
 
 
 
     public OthelloGUI(){
+        this(DEFAULT_TOTAL_MILLIS, DEFAULT_INCREMENT_MILLIS);
+    }
+
+
+    /**
+     * Starts a timed game where each side has the specified total time and increment.
+     *
+     * @param totalMillis the time each side starts with, in milliseconds.
+     * @param incrementMillis the time added to a side's clock after each of its moves, in milliseconds.
+     */
+    public OthelloGUI(long totalMillis, long incrementMillis){
+        this(new OthelloGreedyAlgorithm(), totalMillis, incrementMillis);
+    }
+
+
+    /**
+     * Starts a timed game against the specified model, where each side has the specified
+     * total time and increment.
+     *
+     * @param model the model that runs the game and plays the computer's moves.
+     * @param totalMillis the time each side starts with, in milliseconds.
+     * @param incrementMillis the time added to a side's clock after each of its moves, in milliseconds.
+     */
+    public OthelloGUI(OthelloModel model, long totalMillis, long incrementMillis){
         setupMainWindow();
 
-        model = new OthelloGreedyAlgorithm();
+        this.model = model;
+        clock = new GameClock(totalMillis, incrementMillis);
 
         setupGameBoard();
 
@@ -40,6 +93,10 @@ public class OthelloGUI {
 
         setupTimer();
 
+        setupClockTimer();
+
+        setupAnalysis();
+
 
         gameBoard.setVisible(true);
         mainWindow.setVisible(true);
@@ -71,9 +128,14 @@ public class OthelloGUI {
         //set up each space on the board
         for(int i = 0; i < DIMENSIONS; i++){
             for(int j = 0; j < DIMENSIONS; j++){
-                JPanel current = new JPanel();
+                JPanel current = new JPanel(new BorderLayout());
                 current.setBorder(BorderFactory.createLineBorder(Color.DARK_GRAY));
                 boardPanels[i][j] = current;
+
+                JLabel analysis = new JLabel("", SwingConstants.CENTER);
+                analysisLabels[i][j] = analysis;
+                current.add(analysis, BorderLayout.CENTER);
+
                 setStartingColor(coloredTiles, i, j);
                 gameBoard.add(current);
             }
@@ -125,34 +187,236 @@ public class OthelloGUI {
         statusBar.add(score);
 
 
+        clockDisplay.setBorder(new EmptyBorder(0, 20, 0, 20));
+        statusBar.add(clockDisplay);
+        updateClockDisplay();
+
+
+        analysisToggle.setFocusable(false);
+        analysisToggle.addActionListener(e -> {
+            if(analysisToggle.isSelected()){
+                analysisTimer.start();
+                restartAnalysis();
+            }
+            else{
+                analysisTimer.stop();
+                analysisEngine.stop();
+                clearAnalysis();
+            }
+        });
+        statusBar.add(analysisToggle);
+
+
         mainWindow.add(statusBar, BorderLayout.NORTH);
     }
 
 
     /**
-     * Sets up the timer object that is used to ensure there is a brief
-     * pause between the players turn and the computers turn.
+     * Sets up the search the computer thinks with, and the timer that checks on it while it
+     * thinks. Each check passes the search's latest best move and score on to the
+     * {@link TimeManager TimeManager} budget, which lengthens or shortens the time the computer
+     * thinks for. The computer plays as soon as that time is used up, or sooner if the search
+     * reaches the end of the game or finds that there is only one legal move. The number of
+     * processor cores the computer may think with can be set with the othello.thinking.threads
+     * system property.
      */
     private void setupTimer(){
-        timer = new Timer(2500, new ActionListener() {
-            @Override
-            public void actionPerformed(ActionEvent e) {
-                List<Point> move = model.takeComputerTurn();
-                if(move == null){       //the computer has no more legal moves.
-                    return;
-                }
-                updateBoard(move, TileColor.BLACK);
-                updateStatusBar();
+        int threads = Integer.getInteger("othello.thinking.threads", Runtime.getRuntime().availableProcessors());
+        thinkingEngine = new AnalysisEngine(evaluationWeights(), threads);
+
+        timer = new Timer(THINK_POLL_MILLIS, e -> {
+            Point bestMove = thinkingEngine.getBestMove();
+            AnalysisEngine.MoveScore bestScore = thinkingEngine.getBestScore();
+            if(bestMove != null && bestScore != null){
+                thinkingBudget.depthCompleted(bestScore.getDepth(), bestMove, bestScore.getScore());
+            }
 
+            //play now if waiting for the next check would go past the hard stop
+            long elapsed = (System.nanoTime() - thinkingStarted) / 1_000_000;
+            boolean outOfBudget = (elapsed >= thinkingBudget.getSoftMillis()
+                    || elapsed + THINK_POLL_MILLIS > thinkingBudget.getHardStopMillis());
+            boolean solved = thinkingEngine.getCompletedDepth() >= model.getNumberOfEmptySpots();
+            boolean forced = (bestMove != null && thinkingEngine.getResults().size() == 1);
+            if(outOfBudget || solved || forced){
+                finishComputerTurn();
+            }
+        });
+    }
 
-                if(model.isGameOver()){
-                    JOptionPane.showMessageDialog(null, "Game Over");
-                }
+
+    /**
+     * Starts the game clock (the player goes first) and sets up the timer that refreshes the
+     * clock display and checks if either side has run out of time.
+     */
+    private void setupClockTimer(){
+        clock.start(TileColor.WHITE);
+
+        clockTimer = new Timer(CLOCK_REFRESH_MILLIS, e -> {
+            updateClockDisplay();
+
+            TileColor side = clock.getRunningSide();
+            if(side != null && clock.hasFlagged(side)){
+                endGameOnTime(side);
             }
         });
 
+        clockTimer.start();
+    }
+
+
+    /**
+     * Sets up the background analysis, and the timer that copies its latest scores onto the
+     * board. The analysis evaluates positions the same way the computer does.
+     */
+    private void setupAnalysis(){
+        int threads = Integer.getInteger("othello.analysis.threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+
+        analysisEngine = new AnalysisEngine(evaluationWeights(), threads);
+        analysisTimer = new Timer(ANALYSIS_REFRESH_MILLIS, e -> showAnalysis());
+    }
+
+
+    /**
+     * Returns the weights the model evaluates positions with, so that searches rate positions the
+     * same way the model does.
+     */
+    private EvaluationWeights evaluationWeights(){
+        return (model instanceof OthelloWeightedAlgorithm
+                ? ((OthelloWeightedAlgorithm) model).getWeights() : EvaluationWeights.initial());
+    }
+
+
+    /**
+     * Starts analyzing the current position, if analysis mode is on and the game is still going.
+     * On the computer's turn nothing is started, since the computer's own search is shown instead.
+     */
+    private void restartAnalysis(){
+        clearAnalysis();
+
+        if(!analysisToggle.isSelected()){
+            return;
+        }
+        if(model.isGameOver() || outOfTime != null || !model.isPlayersTurn()){
+            analysisEngine.stop();
+            return;
+        }
+
+        analysisEngine.analyze(model.getBoard(), true);
+    }
+
 
-        timer.setRepeats(false);
+    /**
+     * Returns the search whose scores are shown on the board: the computer's own search while it
+     * is thinking, or the background analysis on the player's turn.
+     */
+    private AnalysisEngine shownEngine(){
+        return (model.isPlayersTurn() ? analysisEngine : thinkingEngine);
+    }
+
+
+    /**
+     * Copies the latest analysis scores onto the board, highlighting the best move. The highlight
+     * comes from the last pass that finished for every move, since in the middle of a pass some
+     * moves are searched a move deeper than others, and their scores can't be compared.
+     */
+    private void showAnalysis(){
+        if(model.isGameOver() || outOfTime != null){
+            return;
+        }
+
+        AnalysisEngine engine = shownEngine();
+        HashMap<Point, AnalysisEngine.MoveScore> results = engine.getResults();
+        Point best = engine.getBestMove();
+
+        for(int i = 0; i < DIMENSIONS; i++){
+            for(int j = 0; j < DIMENSIONS; j++){
+                AnalysisEngine.MoveScore result = results.get(new Point(i, j));
+                JLabel label = analysisLabels[i][j];
+                if(result == null){
+                    label.setText("");
+                    continue;
+                }
+
+                label.setText(String.format(ANALYSIS_DISPLAY, result.getScore() / 100.0, result.getDepth()));
+                label.setForeground(best != null && best.x == i && best.y == j ? Color.BLUE : Color.DARK_GRAY);
+            }
+        }
+    }
+
+
+    /**
+     * Removes all the analysis scores from the board.
+     */
+    private void clearAnalysis(){
+        for(JLabel[] row : analysisLabels){
+            for(JLabel label : row){
+                label.setText("");
+            }
+        }
+    }
+
+
+    /**
+     * Starts the computer thinking about its move, for as long as the time manager allows.
+     */
+    private void startComputerTurn(){
+        thinkingBudget = timeManager.allocate(
+                clock.getRemainingMillis(TileColor.BLACK),
+                clock.getIncrementMillis(),
+                model.getNumberOfEmptySpots());
+        thinkingStarted = System.nanoTime();
+
+        thinkingEngine.analyze(model.getBoard(), false);
+        timer.restart();
+    }
+
+
+    /**
+     * Stops the computer thinking and plays the best move its search found. If the search
+     * didn't finish its first pass in time, the model picks the move instead.
+     */
+    private void finishComputerTurn(){
+        timer.stop();
+        thinkingEngine.stop();
+        if(outOfTime != null){      //the game already ended on time
+            return;
+        }
+
+        Point chosen = thinkingEngine.getBestMove();
+        List<Point> move = (chosen == null ? model.takeComputerTurn() : model.takeComputerTurn(chosen));
+        if(move == null){       //the computer has no more legal moves.
+            return;
+        }
+        clock.press();
+        updateBoard(move, TileColor.BLACK);
+        updateStatusBar();
+        restartAnalysis();
+
+
+        if(model.isGameOver()){
+            clock.stop();
+            JOptionPane.showMessageDialog(null, "Game Over");
+        }
+    }
+
+
+    /**
+     * Ends the game because the specified side ran out of time.
+     *
+     * @param side the side that ran out of time, and therefore lost.
+     */
+    private void endGameOnTime(TileColor side){
+        outOfTime = side;
+        timer.stop();
+        thinkingEngine.stop();
+        clockTimer.stop();
+        clock.stop();
+        analysisEngine.stop();
+        updateClockDisplay();
+        updateStatusBar();
+
+        JOptionPane.showMessageDialog(null, "Game Over");
     }
 
 
@@ -179,7 +443,10 @@ public class OthelloGUI {
     private void updateStatusBar(){
         String turnDisplay;
 
-        if(model.isGameOver()){
+        if(outOfTime != null){
+            turnDisplay = (outOfTime == TileColor.WHITE ? "Computer Wins On Time." : "You Win On Time!!!");
+        }
+        else if(model.isGameOver()){
             turnDisplay = (model.getWinner() == TileColor.BLACK ? "Computer Wins." : "You Win!!!");
         }
         else {
@@ -193,6 +460,28 @@ public class OthelloGUI {
     }
 
 
+    /**
+     * Updates the status bar to display the time each side has left.
+     */
+    private void updateClockDisplay(){
+        clockDisplay.setText(String.format(CLOCK_DISPLAY,
+                formatTime(clock.getRemainingMillis(TileColor.BLACK)),
+                formatTime(clock.getRemainingMillis(TileColor.WHITE))));
+    }
+
+
+    /**
+     * Formats a clock time as minutes, seconds, and tenths of a second.
+     *
+     * @param millis the time to format, in milliseconds.
+     * @return the formatted time, for example 4:07.3
+     */
+    private static String formatTime(long millis){
+        long tenths = Math.max(0, millis) / 100;
+        return String.format("%d:%02d.%d", tenths / 600, (tenths / 10) % 60, tenths % 10);
+    }
+
+
     /**
      * Responds to clicks on the game board by informing the model that the
      * player went in that location for his/her turn.
@@ -201,7 +490,7 @@ public class OthelloGUI {
 
         @Override
         public void mouseClicked(MouseEvent e) {
-            if(model.isGameOver()){       //stop you from taking a turn after the game ends.
+            if(model.isGameOver() || outOfTime != null){       //stop you from taking a turn after the game ends.
                 return;
             }
 
@@ -215,16 +504,19 @@ public class OthelloGUI {
 
                 //now pass this information to the model, and use those results to update the board
                 updateBoard(model.takePlayerTurn(chosen), TileColor.WHITE);
+                clock.press();
                 updateStatusBar();
+                restartAnalysis();
 
 
 
 
                 if(model.isGameOver()){
+                    clock.stop();
                     JOptionPane.showMessageDialog(null, "Game Over");
                 }
                 else{
-                    timer.restart(); //have the computer take its turn
+                    startComputerTurn(); //have the computer take its turn
                 }
             }
             catch(IllegalMoveException error){